@@ -0,0 +1,78 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bubble lookups by tag, done by BubblesService.addBubble() when redundancies aren't allowed,
+ * and the removal of a bubble followed by adding it back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BubblesRegistryBenchmark {
+    @Param({"10", "100"})
+    public int bubbles;
+
+    private final BubblesRegistry<Object> registry = new BubblesRegistry<>();
+    private Object[] items;
+    private String[] tags;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        registry.clear();
+        items = new Object[bubbles];
+        tags = new String[bubbles];
+        for (int i = 0; i < bubbles; i++) {
+            items[i] = new Object();
+            tags[i] = "bubble-" + (i % 4 == 0 ? 0 : i);
+            registry.add(items[i], tags[i]);
+        }
+    }
+
+    @Benchmark
+    public Object findByTag() {
+        next = (next + 1) % bubbles;
+        return registry.findByTag(tags[next]);
+    }
+
+    @Benchmark
+    public boolean removeAndAdd() {
+        next = (next + 1) % bubbles;
+        registry.remove(items[next]);
+        return registry.add(items[next], tags[next]);
+    }
+}
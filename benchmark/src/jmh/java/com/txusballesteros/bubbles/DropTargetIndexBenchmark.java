@@ -0,0 +1,83 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drop target lookup done on every move event of a dragged bubble.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DropTargetIndexBenchmark {
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+    private static final int BUBBLE_SIZE = 150;
+    private static final int TARGET_SIZE = 300;
+    private static final int POSITIONS = 1024;
+
+    @Param({"1", "8", "32"})
+    public int targets;
+
+    private final BubbleDropTargetIndex index = new BubbleDropTargetIndex();
+    private final int[] lefts = new int[POSITIONS];
+    private final int[] tops = new int[POSITIONS];
+    private int position = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index.clear();
+        for (int i = 0; i < targets; i++) {
+            int left = random.nextInt(SCREEN_WIDTH - TARGET_SIZE);
+            int top = random.nextInt(SCREEN_HEIGHT - TARGET_SIZE);
+            index.add(left, top, left + TARGET_SIZE, top + TARGET_SIZE);
+        }
+        index.build();
+        for (int i = 0; i < POSITIONS; i++) {
+            lefts[i] = random.nextInt(SCREEN_WIDTH - BUBBLE_SIZE);
+            tops[i] = random.nextInt(SCREEN_HEIGHT - BUBBLE_SIZE);
+        }
+    }
+
+    @Benchmark
+    public int findTarget() {
+        position = (position + 1) & (POSITIONS - 1);
+        int left = lefts[position];
+        int top = tops[position];
+        return index.findTarget(left, top, left + BUBBLE_SIZE, top + BUBBLE_SIZE);
+    }
+}
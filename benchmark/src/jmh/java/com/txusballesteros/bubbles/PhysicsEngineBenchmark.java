@@ -0,0 +1,111 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per frame work of the bubble motions: one display frame of the physics engine for a number
+ * of bubbles settling against a wall, and a single integration step of all of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhysicsEngineBenchmark {
+    private static final long FRAME_INTERVAL_IN_NANOS = 16666667L;
+
+    @Param({"1", "16"})
+    public int bodies;
+
+    private final BubblesPhysicsEngine engine = new BubblesPhysicsEngine();
+    private final BubblesKinematics steppedKinematics = new BubblesKinematics();
+    private int[] slots;
+    private int[] steppedSlots;
+    private long frameTimeNanos = 0;
+    private int steps = 0;
+    private float lastX;
+
+    private final BubblesPhysicsEngine.Listener listener = new BubblesPhysicsEngine.Listener() {
+        @Override
+        public void onSlotMoved(int slot, float x, float y) {
+            lastX = x;
+        }
+
+        @Override
+        public void onSlotAtRest(int slot) { }
+    };
+
+    @Setup
+    public void setUp() {
+        slots = new int[bodies];
+        steppedSlots = new int[bodies];
+        for (int i = 0; i < bodies; i++) {
+            slots[i] = engine.allocate(listener);
+            steppedSlots[i] = steppedKinematics.allocate();
+        }
+        resetSteppedSlots();
+    }
+
+    private void resetSteppedSlots() {
+        for (int i = 0; i < bodies; i++) {
+            steppedKinematics.setPosition(steppedSlots[i], 500, 100 * i);
+            steppedKinematics.setWallMotion(steppedSlots[i], 3000, -1500, 0, 0, 1770);
+        }
+    }
+
+    @Benchmark
+    public float advanceFrame() {
+        if (engine.isIdle()) {
+            BubblesKinematics kinematics = engine.getKinematics();
+            for (int i = 0; i < bodies; i++) {
+                kinematics.setPosition(slots[i], 500, 100 * i);
+                kinematics.setWallMotion(slots[i], 3000, -1500, 930, 0, 1770);
+                engine.start(slots[i]);
+            }
+        }
+        frameTimeNanos += FRAME_INTERVAL_IN_NANOS;
+        engine.advance(frameTimeNanos);
+        return lastX;
+    }
+
+    @Benchmark
+    public boolean stepSlots() {
+        if (++steps == 240) {
+            steps = 0;
+            resetSteppedSlots();
+        }
+        steppedKinematics.step(steppedSlots, bodies, 1f / 240);
+        return steppedKinematics.isAtRest(steppedSlots[0]);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+/**
+ * Uniform grid over the magnet bounds of the drop targets. Every cell keeps a bit mask
+ * of the targets overlapping it, so a hit test looks at one cell and usually one rectangle.
+ * Bounds are rebuilt once per layout pass, hit tests happen on every move event.
+ */
+final class BubbleDropTargetIndex {
+    static final int NO_TARGET = -1;
+    static final int MAX_TARGETS = 32;
+    private static final int GRID_SIZE = 8;
+
+    private final int[] lefts = new int[MAX_TARGETS];
+    private final int[] tops = new int[MAX_TARGETS];
+    private final int[] rights = new int[MAX_TARGETS];
+    private final int[] bottoms = new int[MAX_TARGETS];
+    private final int[] cells = new int[GRID_SIZE * GRID_SIZE];
+    private int count = 0;
+    private int gridLeft;
+    private int gridTop;
+    private int gridRight;
+    private int gridBottom;
+    private int cellWidth = 1;
+    private int cellHeight = 1;
+
+    void clear() {
+        count = 0;
+        gridLeft = gridTop = gridRight = gridBottom = 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int add(int left, int top, int right, int bottom) {
+        if (count == MAX_TARGETS) {
+            throw new IllegalStateException("Only " + MAX_TARGETS + " drop targets are supported");
+        }
+        lefts[count] = left;
+        tops[count] = top;
+        rights[count] = right;
+        bottoms[count] = bottom;
+        return count++;
+    }
+
+    int getLeft() {
+        return gridLeft;
+    }
+
+    int getTop() {
+        return gridTop;
+    }
+
+    int getRight() {
+        return gridRight;
+    }
+
+    int getBottom() {
+        return gridBottom;
+    }
+
+    int getCenterX(int index) {
+        return lefts[index] + ((rights[index] - lefts[index]) / 2);
+    }
+
+    int getCenterY(int index) {
+        return tops[index] + ((bottoms[index] - tops[index]) / 2);
+    }
+
+    void build() {
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = 0;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        gridLeft = Integer.MAX_VALUE;
+        gridTop = Integer.MAX_VALUE;
+        gridRight = Integer.MIN_VALUE;
+        gridBottom = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            gridLeft = Math.min(gridLeft, lefts[i]);
+            gridTop = Math.min(gridTop, tops[i]);
+            gridRight = Math.max(gridRight, rights[i]);
+            gridBottom = Math.max(gridBottom, bottoms[i]);
+        }
+        cellWidth = Math.max(1, (gridRight - gridLeft + GRID_SIZE - 1) / GRID_SIZE);
+        cellHeight = Math.max(1, (gridBottom - gridTop + GRID_SIZE - 1) / GRID_SIZE);
+
+        for (int i = 0; i < count; i++) {
+            int firstColumn = getColumn(lefts[i]);
+            int lastColumn = getColumn(rights[i] - 1);
+            int firstRow = getRow(tops[i]);
+            int lastRow = getRow(bottoms[i] - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    cells[(row * GRID_SIZE) + column] |= (1 << i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first target whose bounds fully contain the given
+     * rectangle, or NO_TARGET
+     */
+    int findTarget(int left, int top, int right, int bottom) {
+        int centerX = left + ((right - left) / 2);
+        int centerY = top + ((bottom - top) / 2);
+        if (count == 0 || centerX < gridLeft || centerX >= gridRight
+                || centerY < gridTop || centerY >= gridBottom) {
+            return NO_TARGET;
+        }
+
+        int candidates = cells[(getRow(centerY) * GRID_SIZE) + getColumn(centerX)];
+        while (candidates != 0) {
+            int index = Integer.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (left >= lefts[index] && right <= rights[index]
+                    && top >= tops[index] && bottom <= bottoms[index]) {
+                return index;
+            }
+        }
+        return NO_TARGET;
+    }
+
+    private int getColumn(int x) {
+        return Math.max(0, Math.min(GRID_SIZE - 1, (x - gridLeft) / cellWidth));
+    }
+
+    private int getRow(int y) {
+        return Math.max(0, Math.min(GRID_SIZE - 1, (y - gridTop) / cellHeight));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+/**
+ * Predicts where a dragging finger will be a short time ahead, so the bubble window can be
+ * placed there instead of trailing the last reported touch position. The velocity is a least
+ * squares fit of the recent samples, capped, and the prediction starts from the last sample.
+ * A finger that has almost stopped isn't extrapolated, the bubble stays on the last sample.
+ */
+final class BubbleTouchPredictor {
+    private static final int MAX_SAMPLES = 8;
+    private static final long SAMPLES_WINDOW_IN_MS = 50;
+    private static final float MAX_HORIZON_IN_MS = 34;
+    private static final float MIN_VELOCITY_IN_PX_PER_MS = 0.05f;
+
+    private final float[] sampleX = new float[MAX_SAMPLES];
+    private final float[] sampleY = new float[MAX_SAMPLES];
+    private final long[] sampleTime = new long[MAX_SAMPLES];
+    private int newest = -1;
+    private int count = 0;
+    private float predictedX;
+    private float predictedY;
+
+    void reset() {
+        newest = -1;
+        count = 0;
+    }
+
+    void addSample(float x, float y, long timeInMs) {
+        if (count > 0 && timeInMs < sampleTime[newest]) {
+            return;
+        }
+        newest = (newest + 1) % MAX_SAMPLES;
+        sampleX[newest] = x;
+        sampleY[newest] = y;
+        sampleTime[newest] = timeInMs;
+        count = Math.min(count + 1, MAX_SAMPLES);
+        predictedX = x;
+        predictedY = y;
+    }
+
+    /**
+     * @param horizonInMs how far ahead of the last sample to predict, at most two frames at 60Hz
+     * @param maxVelocity fastest velocity to extrapolate with, in pixels per second
+     */
+    void predict(float horizonInMs, float maxVelocity) {
+        if (count == 0) {
+            return;
+        }
+        predictedX = sampleX[newest];
+        predictedY = sampleY[newest];
+        if (count < 2 || horizonInMs <= 0) {
+            return;
+        }
+
+        // Times are taken relative to the newest sample to keep the sums small.
+        long newestTime = sampleTime[newest];
+        int samples = 0;
+        float sumT = 0;
+        float sumX = 0;
+        float sumY = 0;
+        for (int i = 0, index = newest; i < count; i++, index = (index + MAX_SAMPLES - 1) % MAX_SAMPLES) {
+            long age = newestTime - sampleTime[index];
+            if (age > SAMPLES_WINDOW_IN_MS) {
+                break;
+            }
+            sumT -= age;
+            sumX += sampleX[index];
+            sumY += sampleY[index];
+            samples++;
+        }
+        if (samples < 2) {
+            return;
+        }
+        float meanT = sumT / samples;
+        float meanX = sumX / samples;
+        float meanY = sumY / samples;
+        float varianceT = 0;
+        float covarianceX = 0;
+        float covarianceY = 0;
+        for (int i = 0, index = newest; i < samples; i++, index = (index + MAX_SAMPLES - 1) % MAX_SAMPLES) {
+            float t = (sampleTime[index] - newestTime) - meanT;
+            varianceT += t * t;
+            covarianceX += t * (sampleX[index] - meanX);
+            covarianceY += t * (sampleY[index] - meanY);
+        }
+        if (varianceT == 0) {
+            return;
+        }
+
+        float velocityX = covarianceX / varianceT;
+        float velocityY = covarianceY / varianceT;
+        float speed = (float) Math.sqrt((velocityX * velocityX) + (velocityY * velocityY));
+        if (speed < MIN_VELOCITY_IN_PX_PER_MS) {
+            return;
+        }
+        float maxSpeed = maxVelocity / 1000f;
+        if (speed > maxSpeed) {
+            velocityX *= maxSpeed / speed;
+            velocityY *= maxSpeed / speed;
+        }
+        float horizon = Math.min(horizonInMs, MAX_HORIZON_IN_MS);
+        predictedX += velocityX * horizon;
+        predictedY += velocityY * horizon;
+    }
+
+    float getPredictedX() {
+        return predictedX;
+    }
+
+    float getPredictedY() {
+        return predictedY;
+    }
+}
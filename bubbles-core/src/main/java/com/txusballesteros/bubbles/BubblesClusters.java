@@ -0,0 +1,139 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import java.util.Arrays;
+
+/**
+ * Groups the bounds of bubbles into clusters whose bounding box isn't much bigger than the
+ * bubbles in it, so a window covering a cluster doesn't take the touches far away from them.
+ * Clusters are joined greedily, the pair with the tightest box first.
+ */
+final class BubblesClusters {
+    private int[] lefts = new int[8];
+    private int[] tops = new int[8];
+    private int[] rights = new int[8];
+    private int[] bottoms = new int[8];
+    private long[] areas = new long[8];
+    private int[] clusters = new int[8];
+    private int count = 0;
+
+    void clear() {
+        count = 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int add(int left, int top, int right, int bottom) {
+        if (count == lefts.length) {
+            grow(count * 2);
+        }
+        lefts[count] = left;
+        tops[count] = top;
+        rights[count] = right;
+        bottoms[count] = bottom;
+        return count++;
+    }
+
+    /**
+     * Bounds are merged in place, add them again after a clear() to build another time.
+     * @param maxSparseness how many times the area of its bubbles a cluster box can cover
+     * @return how many clusters the bounds were grouped in
+     */
+    int build(float maxSparseness) {
+        for (int i = 0; i < count; i++) {
+            clusters[i] = i;
+            areas[i] = getArea(lefts[i], tops[i], rights[i], bottoms[i]);
+        }
+
+        while (true) {
+            int bestFirst = -1;
+            int bestSecond = -1;
+            float bestSparseness = maxSparseness;
+            for (int first = 0; first < count; first++) {
+                if (clusters[first] != first) {
+                    continue;
+                }
+                for (int second = first + 1; second < count; second++) {
+                    if (clusters[second] != second) {
+                        continue;
+                    }
+                    long box = getArea(Math.min(lefts[first], lefts[second]),
+                            Math.min(tops[first], tops[second]),
+                            Math.max(rights[first], rights[second]),
+                            Math.max(bottoms[first], bottoms[second]));
+                    float sparseness = box / (float) (areas[first] + areas[second]);
+                    if (sparseness <= bestSparseness) {
+                        bestFirst = first;
+                        bestSecond = second;
+                        bestSparseness = sparseness;
+                    }
+                }
+            }
+            if (bestFirst < 0) {
+                break;
+            }
+            // The first bubble of a cluster keeps the box and area of the whole cluster.
+            lefts[bestFirst] = Math.min(lefts[bestFirst], lefts[bestSecond]);
+            tops[bestFirst] = Math.min(tops[bestFirst], tops[bestSecond]);
+            rights[bestFirst] = Math.max(rights[bestFirst], rights[bestSecond]);
+            bottoms[bestFirst] = Math.max(bottoms[bestFirst], bottoms[bestSecond]);
+            areas[bestFirst] += areas[bestSecond];
+            for (int i = 0; i < count; i++) {
+                if (clusters[i] == bestSecond) {
+                    clusters[i] = bestFirst;
+                }
+            }
+        }
+
+        int clusterCount = 0;
+        for (int i = 0; i < count; i++) {
+            clusters[i] = clusters[i] == i ? clusterCount++ : clusters[clusters[i]];
+        }
+        return clusterCount;
+    }
+
+    /**
+     * @return the cluster of the bounds added at that index, valid after build()
+     */
+    int getCluster(int index) {
+        return clusters[index];
+    }
+
+    private static long getArea(int left, int top, int right, int bottom) {
+        return Math.max(1L, (long) (right - left) * (bottom - top));
+    }
+
+    private void grow(int capacity) {
+        lefts = Arrays.copyOf(lefts, capacity);
+        tops = Arrays.copyOf(tops, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        bottoms = Arrays.copyOf(bottoms, capacity);
+        areas = Arrays.copyOf(areas, capacity);
+        clusters = Arrays.copyOf(clusters, capacity);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import java.util.Arrays;
+
+/**
+ * Kinematic state of every bubble kept in primitive arrays indexed by slot, so motions of
+ * many bubbles are stepped together walking the same few arrays. A damped spring pulls a
+ * moving slot horizontally to its wall while friction slows down its vertical motion.
+ */
+final class BubblesKinematics {
+    static final int NO_SLOT = -1;
+    private static final int INITIAL_CAPACITY = 8;
+    private static final float STIFFNESS = 600f;
+    private static final float DAMPING_RATIO = 0.85f;
+    private static final float DAMPING = (float) (2 * DAMPING_RATIO * Math.sqrt(STIFFNESS));
+    private static final float FRICTION = 4f;
+    private static final float REST_DISTANCE = 1f;
+    private static final float REST_VELOCITY = 20f;
+
+    private float[] x = new float[INITIAL_CAPACITY];
+    private float[] y = new float[INITIAL_CAPACITY];
+    private float[] previousX = new float[INITIAL_CAPACITY];
+    private float[] previousY = new float[INITIAL_CAPACITY];
+    private float[] velocityX = new float[INITIAL_CAPACITY];
+    private float[] velocityY = new float[INITIAL_CAPACITY];
+    private float[] targetX = new float[INITIAL_CAPACITY];
+    private float[] minY = new float[INITIAL_CAPACITY];
+    private float[] maxY = new float[INITIAL_CAPACITY];
+    private int[] width = new int[INITIAL_CAPACITY];
+    private int[] height = new int[INITIAL_CAPACITY];
+    private boolean[] allocated = new boolean[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int slotCount = 0;
+
+    /**
+     * Where a motion with the given release velocity would end under friction alone,
+     * used to pick the wall a fling is heading to.
+     */
+    static float projectPosition(float position, float velocity) {
+        return position + (velocity / FRICTION);
+    }
+
+    int allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == capacity()) {
+                grow();
+            }
+            slot = slotCount++;
+        }
+        allocated[slot] = true;
+        setPosition(slot, 0, 0);
+        width[slot] = 0;
+        height[slot] = 0;
+        return slot;
+    }
+
+    void release(int slot) {
+        if (allocated[slot]) {
+            allocated[slot] = false;
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    int capacity() {
+        return allocated.length;
+    }
+
+    private void grow() {
+        int capacity = capacity() * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        allocated = Arrays.copyOf(allocated, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+
+    void setPosition(int slot, float x, float y) {
+        this.x[slot] = this.previousX[slot] = x;
+        this.y[slot] = this.previousY[slot] = y;
+        velocityX[slot] = 0;
+        velocityY[slot] = 0;
+    }
+
+    void setSize(int slot, int width, int height) {
+        this.width[slot] = width;
+        this.height[slot] = height;
+    }
+
+    float getX(int slot) {
+        return x[slot];
+    }
+
+    float getY(int slot) {
+        return y[slot];
+    }
+
+    /**
+     * Starts a motion to the wall at targetX from the current position of the slot.
+     */
+    void setWallMotion(int slot, float velocityX, float velocityY, float targetX, float minY, float maxY) {
+        this.velocityX[slot] = velocityX;
+        this.velocityY[slot] = velocityY;
+        this.targetX[slot] = targetX;
+        this.minY[slot] = minY;
+        this.maxY[slot] = Math.max(minY, maxY);
+    }
+
+    /**
+     * Advances the given slots one time step with semi-implicit Euler integration.
+     */
+    void step(int[] slots, int count, float timeStep) {
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            previousX[slot] = x[slot];
+            previousY[slot] = y[slot];
+
+            float accelerationX = (-STIFFNESS * (x[slot] - targetX[slot])) - (DAMPING * velocityX[slot]);
+            velocityX[slot] += accelerationX * timeStep;
+            x[slot] += velocityX[slot] * timeStep;
+
+            velocityY[slot] -= velocityY[slot] * FRICTION * timeStep;
+            y[slot] += velocityY[slot] * timeStep;
+            if (y[slot] < minY[slot]) {
+                y[slot] = minY[slot];
+                velocityY[slot] = 0;
+            } else if (y[slot] > maxY[slot]) {
+                y[slot] = maxY[slot];
+                velocityY[slot] = 0;
+            }
+        }
+    }
+
+    boolean isAtRest(int slot) {
+        return Math.abs(x[slot] - targetX[slot]) < REST_DISTANCE
+                && Math.abs(velocityX[slot]) < REST_VELOCITY
+                && Math.abs(velocityY[slot]) < REST_VELOCITY;
+    }
+
+    /**
+     * Snaps the slot to its wall and stops it.
+     */
+    void settle(int slot) {
+        x[slot] = previousX[slot] = targetX[slot];
+        previousY[slot] = y[slot];
+        velocityX[slot] = 0;
+        velocityY[slot] = 0;
+    }
+
+    float interpolateX(int slot, float alpha) {
+        return previousX[slot] + ((x[slot] - previousX[slot]) * alpha);
+    }
+
+    float interpolateY(int slot, float alpha) {
+        return previousY[slot] + ((y[slot] - previousY[slot]) * alpha);
+    }
+
+    /**
+     * @return the drop target the bounds of the slot fall into, or BubbleDropTargetIndex.NO_TARGET
+     */
+    int findDropTarget(int slot, BubbleDropTargetIndex index) {
+        int left = (int) x[slot];
+        int top = (int) y[slot];
+        return index.findTarget(left, top, left + width[slot], top + height[slot]);
+    }
+}
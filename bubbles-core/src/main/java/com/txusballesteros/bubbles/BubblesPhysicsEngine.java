@@ -0,0 +1,146 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import java.util.Arrays;
+
+/**
+ * Advances every moving slot of the kinematics store with a fixed time step, independently of
+ * the display refresh rate. Positions handed to the listeners are interpolated between the last
+ * two steps so motion stays smooth when frames and steps don't line up.
+ */
+final class BubblesPhysicsEngine {
+    static final long TIME_STEP_IN_NANOS = 1000000000L / 240;
+    private static final float TIME_STEP = TIME_STEP_IN_NANOS / 1000000000f;
+    private static final int MAX_STEPS_PER_FRAME = 24;
+
+    private final BubblesKinematics kinematics = new BubblesKinematics();
+    private Listener[] listeners = new Listener[kinematics.capacity()];
+    private int[] movingIndexes = new int[kinematics.capacity()];
+    private int[] movingSlots = new int[kinematics.capacity()];
+    private int movingCount = 0;
+    private int[] restingSlots = new int[kinematics.capacity()];
+    private long lastFrameTimeNanos = -1;
+    private long accumulatedNanos = 0;
+
+    interface Listener {
+        void onSlotMoved(int slot, float x, float y);
+        void onSlotAtRest(int slot);
+    }
+
+    BubblesKinematics getKinematics() {
+        return kinematics;
+    }
+
+    int allocate(Listener listener) {
+        int slot = kinematics.allocate();
+        if (listeners.length < kinematics.capacity()) {
+            int capacity = kinematics.capacity();
+            listeners = Arrays.copyOf(listeners, capacity);
+            movingIndexes = Arrays.copyOf(movingIndexes, capacity);
+            movingSlots = Arrays.copyOf(movingSlots, capacity);
+            restingSlots = Arrays.copyOf(restingSlots, capacity);
+        }
+        listeners[slot] = listener;
+        movingIndexes[slot] = -1;
+        return slot;
+    }
+
+    void release(int slot) {
+        stop(slot);
+        listeners[slot] = null;
+        kinematics.release(slot);
+    }
+
+    void start(int slot) {
+        if (movingIndexes[slot] < 0) {
+            movingIndexes[slot] = movingCount;
+            movingSlots[movingCount++] = slot;
+        }
+    }
+
+    void stop(int slot) {
+        int index = movingIndexes[slot];
+        if (index >= 0) {
+            int lastSlot = movingSlots[--movingCount];
+            movingSlots[index] = lastSlot;
+            movingIndexes[lastSlot] = index;
+            movingIndexes[slot] = -1;
+            if (movingCount == 0) {
+                resetFrameTime();
+            }
+        }
+    }
+
+    private void resetFrameTime() {
+        lastFrameTimeNanos = -1;
+        accumulatedNanos = 0;
+    }
+
+    boolean isIdle() {
+        return movingCount == 0;
+    }
+
+    void advance(long frameTimeNanos) {
+        if (lastFrameTimeNanos < 0) {
+            lastFrameTimeNanos = frameTimeNanos - TIME_STEP_IN_NANOS;
+        }
+        accumulatedNanos += Math.max(0, frameTimeNanos - lastFrameTimeNanos);
+        lastFrameTimeNanos = frameTimeNanos;
+        int steps = (int) Math.min(MAX_STEPS_PER_FRAME, accumulatedNanos / TIME_STEP_IN_NANOS);
+        accumulatedNanos = Math.min(accumulatedNanos - (steps * TIME_STEP_IN_NANOS), TIME_STEP_IN_NANOS);
+        float alpha = accumulatedNanos / (float) TIME_STEP_IN_NANOS;
+
+        for (int step = 0; step < steps; step++) {
+            kinematics.step(movingSlots, movingCount, TIME_STEP);
+        }
+
+        int restingCount = 0;
+        for (int i = 0; i < movingCount; i++) {
+            int slot = movingSlots[i];
+            if (kinematics.isAtRest(slot)) {
+                kinematics.settle(slot);
+                restingSlots[restingCount++] = slot;
+            }
+        }
+        for (int i = 0; i < restingCount; i++) {
+            stop(restingSlots[i]);
+        }
+
+        // Listeners may start or stop slots, so they are called once the moving set is final.
+        for (int i = 0; i < movingCount; i++) {
+            int slot = movingSlots[i];
+            listeners[slot].onSlotMoved(slot, kinematics.interpolateX(slot, alpha),
+                    kinematics.interpolateY(slot, alpha));
+        }
+        for (int i = 0; i < restingCount; i++) {
+            int slot = restingSlots[i];
+            if (listeners[slot] != null) {
+                listeners[slot].onSlotMoved(slot, kinematics.getX(slot), kinematics.getY(slot));
+                listeners[slot].onSlotAtRest(slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bubbles in insertion order, indexed by identity and by their tag. Entries sharing a tag are
+ * chained, so lookups, removals and tag changes stay O(1) even when redundancies are allowed.
+ */
+final class BubblesRegistry<T> implements Iterable<T> {
+    private final Map<T, Entry<T>> entries = new LinkedHashMap<>();
+    private final Map<Object, Entry<T>> tagIndex = new HashMap<>();
+
+    boolean add(T item, Object tag) {
+        if (entries.containsKey(item)) {
+            return false;
+        }
+        Entry<T> entry = new Entry<>(item, tag);
+        entries.put(item, entry);
+        linkTag(entry);
+        return true;
+    }
+
+    boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        unlinkTag(entry);
+        return true;
+    }
+
+    /**
+     * Indexes a registered item under its new tag, keeping its insertion order. It goes last in
+     * the chain of the new tag.
+     * @return false if the item isn't registered
+     */
+    boolean setTag(T item, Object tag) {
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.tag != tag && (entry.tag == null || !entry.tag.equals(tag))) {
+            unlinkTag(entry);
+            entry.tag = tag;
+            linkTag(entry);
+        }
+        return true;
+    }
+
+    private void linkTag(Entry<T> entry) {
+        if (entry.tag != null) {
+            Entry<T> head = tagIndex.get(entry.tag);
+            if (head == null) {
+                tagIndex.put(entry.tag, entry);
+            } else {
+                Entry<T> tail = head.previousWithTag;
+                tail.nextWithTag = entry;
+                entry.previousWithTag = tail;
+                head.previousWithTag = entry;
+            }
+        }
+    }
+
+    private void unlinkTag(Entry<T> entry) {
+        if (entry.tag != null) {
+            Entry<T> head = tagIndex.get(entry.tag);
+            if (head == entry) {
+                if (entry.nextWithTag == null) {
+                    tagIndex.remove(entry.tag);
+                } else {
+                    entry.nextWithTag.previousWithTag = entry.previousWithTag;
+                    tagIndex.put(entry.tag, entry.nextWithTag);
+                }
+            } else {
+                entry.previousWithTag.nextWithTag = entry.nextWithTag;
+                if (entry.nextWithTag != null) {
+                    entry.nextWithTag.previousWithTag = entry.previousWithTag;
+                } else {
+                    head.previousWithTag = entry.previousWithTag;
+                }
+            }
+        }
+        entry.previousWithTag = entry;
+        entry.nextWithTag = null;
+    }
+
+    boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * @return the registered item holding the given tag for the longest time, or null
+     */
+    T findByTag(Object tag) {
+        Entry<T> entry = tag != null ? tagIndex.get(tag) : null;
+        return entry != null ? entry.item : null;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every item, returning them in insertion order.
+     */
+    List<T> clear() {
+        List<T> items = new ArrayList<>(entries.keySet());
+        entries.clear();
+        tagIndex.clear();
+        return items;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return entries.keySet().iterator();
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private Object tag;
+        private Entry<T> previousWithTag = this;
+        private Entry<T> nextWithTag;
+
+        private Entry(T item, Object tag) {
+            this.item = item;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BubbleDropTargetIndexTest {
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+    private static final int LAYOUTS = 200;
+    private static final int HIT_TESTS = 2000;
+
+    private BubbleDropTargetIndex index;
+    private int[][] targets;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        index = new BubbleDropTargetIndex();
+        targets = new int[BubbleDropTargetIndex.MAX_TARGETS][4];
+        random = new Random(42);
+    }
+
+    @Test
+    public void findTargetMatchesBruteForce() {
+        for (int layout = 0; layout < LAYOUTS; layout++) {
+            int count = 1 + random.nextInt(BubbleDropTargetIndex.MAX_TARGETS);
+            index.clear();
+            for (int i = 0; i < count; i++) {
+                int left = random.nextInt(SCREEN_WIDTH);
+                int top = random.nextInt(SCREEN_HEIGHT);
+                int right = left + 1 + random.nextInt(400);
+                int bottom = top + 1 + random.nextInt(400);
+                targets[i] = new int[] { left, top, right, bottom };
+                index.add(left, top, right, bottom);
+            }
+            index.build();
+
+            for (int test = 0; test < HIT_TESTS; test++) {
+                int left = random.nextInt(SCREEN_WIDTH);
+                int top = random.nextInt(SCREEN_HEIGHT);
+                int right = left + 1 + random.nextInt(200);
+                int bottom = top + 1 + random.nextInt(200);
+
+                assertEquals(findTarget(count, left, top, right, bottom),
+                        index.findTarget(left, top, right, bottom));
+            }
+        }
+    }
+
+    @Test
+    public void findTargetMatchesBruteForceWhenTargetsOverlap() {
+        index.add(100, 100, 500, 500);
+        index.add(200, 200, 400, 400);
+        index.add(0, 0, 1000, 1000);
+        targets[0] = new int[] { 100, 100, 500, 500 };
+        targets[1] = new int[] { 200, 200, 400, 400 };
+        targets[2] = new int[] { 0, 0, 1000, 1000 };
+        index.build();
+
+        for (int test = 0; test < HIT_TESTS; test++) {
+            int left = random.nextInt(1100) - 50;
+            int top = random.nextInt(1100) - 50;
+            int right = left + 1 + random.nextInt(300);
+            int bottom = top + 1 + random.nextInt(300);
+
+            assertEquals(findTarget(3, left, top, right, bottom),
+                    index.findTarget(left, top, right, bottom));
+        }
+    }
+
+    @Test
+    public void emptyIndexHasNoTargets() {
+        index.add(0, 0, 100, 100);
+        index.build();
+        index.clear();
+        index.build();
+
+        assertEquals(BubbleDropTargetIndex.NO_TARGET, index.findTarget(10, 10, 20, 20));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addingTooManyTargetsFails() {
+        for (int i = 0; i <= BubbleDropTargetIndex.MAX_TARGETS; i++) {
+            index.add(i, i, i + 10, i + 10);
+        }
+    }
+
+    private int findTarget(int count, int left, int top, int right, int bottom) {
+        for (int i = 0; i < count; i++) {
+            int[] target = targets[i];
+            if (left >= target[0] && top >= target[1] && right <= target[2] && bottom <= target[3]) {
+                return i;
+            }
+        }
+        return BubbleDropTargetIndex.NO_TARGET;
+    }
+}
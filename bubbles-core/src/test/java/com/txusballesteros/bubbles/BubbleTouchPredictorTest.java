@@ -0,0 +1,139 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BubbleTouchPredictorTest {
+    private static final float FRAME_INTERVAL_IN_MS = 16;
+    private static final float MAX_VELOCITY = 8000;
+    private static final float DELTA = 0.01f;
+
+    private BubbleTouchPredictor predictor;
+
+    @Before
+    public void setUp() {
+        predictor = new BubbleTouchPredictor();
+    }
+
+    @Test
+    public void steadyMotionIsExtrapolated() {
+        // One pixel per millisecond along x, half along y.
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(time, time / 2f, time);
+        }
+
+        predictor.predict(FRAME_INTERVAL_IN_MS, MAX_VELOCITY);
+
+        assertEquals(40 + FRAME_INTERVAL_IN_MS, predictor.getPredictedX(), DELTA);
+        assertEquals(20 + (FRAME_INTERVAL_IN_MS / 2), predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void withoutHorizonTheLastSampleIsUsed() {
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(time, 0, time);
+        }
+
+        predictor.predict(0, MAX_VELOCITY);
+
+        assertEquals(40, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void nearlyStoppedFingerIsNotExtrapolated() {
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(500 + (time / 1000f), 500, time);
+        }
+
+        predictor.predict(FRAME_INTERVAL_IN_MS, MAX_VELOCITY);
+
+        assertEquals(500.04f, predictor.getPredictedX(), DELTA);
+        assertEquals(500, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void fingerStoppedAfterAFastMoveIsNotExtrapolated() {
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(time * 10, 0, time);
+        }
+        // The finger rests, only samples older than the fit window show the motion.
+        predictor.addSample(400, 0, 200);
+
+        predictor.predict(FRAME_INTERVAL_IN_MS, MAX_VELOCITY);
+
+        assertEquals(400, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void velocityIsCapped() {
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(time * 100, 0, time);
+        }
+
+        predictor.predict(FRAME_INTERVAL_IN_MS, 1000);
+
+        assertEquals(4000 + FRAME_INTERVAL_IN_MS, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void horizonIsCapped() {
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(time, 0, time);
+        }
+
+        predictor.predict(1000, MAX_VELOCITY);
+
+        assertEquals(40 + 34, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void samplesOlderThanTheNewestAreDropped() {
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(10, 0, 10);
+        predictor.addSample(1000, 0, 5);
+
+        predictor.predict(0, MAX_VELOCITY);
+
+        assertEquals(10, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void resetForgetsTheMotion() {
+        for (int time = 0; time <= 40; time += 8) {
+            predictor.addSample(time, 0, time);
+        }
+        predictor.reset();
+        predictor.addSample(200, 300, 100);
+
+        predictor.predict(FRAME_INTERVAL_IN_MS, MAX_VELOCITY);
+
+        assertEquals(200, predictor.getPredictedX(), DELTA);
+        assertEquals(300, predictor.getPredictedY(), DELTA);
+    }
+}
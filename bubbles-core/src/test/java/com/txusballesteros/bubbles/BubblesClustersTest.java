@@ -0,0 +1,101 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class BubblesClustersTest {
+    private static final int SIZE = 100;
+    private static final int SCREEN_WIDTH = 1080;
+    private static final float MAX_SPARSENESS = 2f;
+
+    private BubblesClusters clusters;
+
+    @Before
+    public void setUp() {
+        clusters = new BubblesClusters();
+    }
+
+    @Test
+    public void stackedBubblesShareACluster() {
+        addBubble(0, 300);
+        addBubble(0, 400);
+        addBubble(0, 550);
+
+        assertEquals(1, clusters.build(MAX_SPARSENESS));
+    }
+
+    @Test
+    public void bubblesOnOppositeWallsAreSplit() {
+        int left = addBubble(0, 300);
+        int right = addBubble(SCREEN_WIDTH - SIZE, 300);
+
+        assertEquals(2, clusters.build(MAX_SPARSENESS));
+        assertNotEquals(clusters.getCluster(left), clusters.getCluster(right));
+    }
+
+    @Test
+    public void eachWallKeepsItsOwnCluster() {
+        int[] bubbles = new int[] {
+                addBubble(0, 300), addBubble(SCREEN_WIDTH - SIZE, 320),
+                addBubble(0, 400), addBubble(SCREEN_WIDTH - SIZE, 420),
+        };
+
+        assertEquals(2, clusters.build(MAX_SPARSENESS));
+        assertEquals(clusters.getCluster(bubbles[0]), clusters.getCluster(bubbles[2]));
+        assertEquals(clusters.getCluster(bubbles[1]), clusters.getCluster(bubbles[3]));
+        assertNotEquals(clusters.getCluster(bubbles[0]), clusters.getCluster(bubbles[1]));
+    }
+
+    @Test
+    public void clustersAreNumberedInOrder() {
+        addBubble(SCREEN_WIDTH - SIZE, 300);
+        addBubble(0, 300);
+        addBubble(SCREEN_WIDTH - SIZE, 400);
+
+        assertEquals(2, clusters.build(MAX_SPARSENESS));
+        assertEquals(0, clusters.getCluster(0));
+        assertEquals(1, clusters.getCluster(1));
+        assertEquals(0, clusters.getCluster(2));
+    }
+
+    @Test
+    public void boundsGrowPastTheInitialCapacity() {
+        for (int i = 0; i < 20; i++) {
+            addBubble(0, i * SIZE);
+        }
+
+        assertEquals(20, clusters.size());
+        assertEquals(1, clusters.build(MAX_SPARSENESS));
+    }
+
+    private int addBubble(int x, int y) {
+        return clusters.add(x, y, x + SIZE, y + SIZE);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BubblesKinematicsTest {
+    private static final float TIME_STEP = 1f / 120f;
+    private static final int MAX_STEPS = 1200;
+
+    private BubblesKinematics kinematics;
+    private int[] slots;
+
+    @Before
+    public void setUp() {
+        kinematics = new BubblesKinematics();
+        slots = new int[1];
+    }
+
+    @Test
+    public void wallMotionComesToRestAtItsWall() {
+        int slot = kinematics.allocate();
+        kinematics.setPosition(slot, 300, 500);
+        kinematics.setWallMotion(slot, -800, 0, 0, 0, 1000);
+        slots[0] = slot;
+
+        int steps = stepUntilAtRest(slot);
+
+        assertTrue(steps < MAX_STEPS);
+        assertEquals(0f, kinematics.getX(slot), 1f);
+        assertEquals(500f, kinematics.getY(slot), 0.01f);
+    }
+
+    @Test
+    public void stepMovesTowardsTheWallAndKeepsThePreviousPosition() {
+        int slot = kinematics.allocate();
+        kinematics.setPosition(slot, 300, 500);
+        kinematics.setWallMotion(slot, 0, 0, 1000, 0, 1000);
+        slots[0] = slot;
+
+        kinematics.step(slots, 1, TIME_STEP);
+
+        assertTrue(kinematics.getX(slot) > 300f);
+        assertEquals(300f, kinematics.interpolateX(slot, 0f), 0.0001f);
+        assertEquals(kinematics.getX(slot), kinematics.interpolateX(slot, 1f), 0.0001f);
+        assertFalse(kinematics.isAtRest(slot));
+    }
+
+    @Test
+    public void verticalMotionIsClampedToItsRange() {
+        int slot = kinematics.allocate();
+        kinematics.setPosition(slot, 0, 500);
+        kinematics.setWallMotion(slot, 0, 100000, 0, 0, 800);
+        slots[0] = slot;
+
+        stepUntilAtRest(slot);
+
+        assertEquals(800f, kinematics.getY(slot), 0.0001f);
+        assertTrue(kinematics.isAtRest(slot));
+    }
+
+    @Test
+    public void settleSnapsToTheWallAndStops() {
+        int slot = kinematics.allocate();
+        kinematics.setPosition(slot, 300, 500);
+        kinematics.setWallMotion(slot, 0, 400, 1000, 0, 1000);
+        slots[0] = slot;
+        kinematics.step(slots, 1, TIME_STEP);
+        float y = kinematics.getY(slot);
+
+        kinematics.settle(slot);
+
+        assertTrue(kinematics.isAtRest(slot));
+        assertEquals(1000f, kinematics.getX(slot), 0f);
+        assertEquals(1000f, kinematics.interpolateX(slot, 0f), 0f);
+        assertEquals(y, kinematics.interpolateY(slot, 0f), 0f);
+        kinematics.step(slots, 1, TIME_STEP);
+        assertEquals(1000f, kinematics.getX(slot), 0f);
+        assertEquals(y, kinematics.getY(slot), 0f);
+    }
+
+    @Test
+    public void stepOnlyAdvancesTheGivenSlots() {
+        int moving = kinematics.allocate();
+        int still = kinematics.allocate();
+        kinematics.setPosition(moving, 300, 500);
+        kinematics.setWallMotion(moving, 0, 0, 0, 0, 1000);
+        kinematics.setPosition(still, 300, 500);
+        kinematics.setWallMotion(still, 0, 0, 0, 0, 1000);
+        slots[0] = moving;
+
+        kinematics.step(slots, 1, TIME_STEP);
+
+        assertTrue(kinematics.getX(moving) < 300f);
+        assertEquals(300f, kinematics.getX(still), 0f);
+    }
+
+    @Test
+    public void releasedSlotsAreReusedAndCapacityGrows() {
+        int first = kinematics.allocate();
+        int second = kinematics.allocate();
+        kinematics.setPosition(first, 10, 20);
+        kinematics.release(first);
+
+        int reused = kinematics.allocate();
+
+        assertEquals(first, reused);
+        assertNotEquals(second, reused);
+        assertEquals(0f, kinematics.getX(reused), 0f);
+        assertEquals(0f, kinematics.getY(reused), 0f);
+        int capacity = kinematics.capacity();
+        for (int i = 0; i <= capacity; i++) {
+            kinematics.allocate();
+        }
+        assertTrue(kinematics.capacity() > capacity);
+    }
+
+    @Test
+    public void findDropTargetUsesTheBoundsOfTheSlot() {
+        BubbleDropTargetIndex index = new BubbleDropTargetIndex();
+        index.add(100, 100, 300, 300);
+        index.build();
+        int slot = kinematics.allocate();
+        kinematics.setSize(slot, 50, 50);
+
+        kinematics.setPosition(slot, 150, 150);
+        assertEquals(0, kinematics.findDropTarget(slot, index));
+        kinematics.setPosition(slot, 280, 150);
+        assertEquals(BubbleDropTargetIndex.NO_TARGET, kinematics.findDropTarget(slot, index));
+    }
+
+    private int stepUntilAtRest(int slot) {
+        int steps = 0;
+        while (!kinematics.isAtRest(slot) && steps < MAX_STEPS) {
+            kinematics.step(slots, 1, TIME_STEP);
+            steps++;
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BubblesPhysicsEngineTest {
+    private static final long FRAME_INTERVAL_IN_NANOS = 16666667L;
+
+    private BubblesPhysicsEngine engine;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() {
+        engine = new BubblesPhysicsEngine();
+        listener = new RecordingListener();
+    }
+
+    @Test
+    public void firstFrameOfAMotionDoesNotMove() {
+        startMotion(engine, listener);
+
+        engine.advance(FRAME_INTERVAL_IN_NANOS);
+
+        assertEquals(500f, listener.x, 0.01f);
+    }
+
+    @Test
+    public void motionStoppedFromOutsideDoesNotCatchUpOnRestart() {
+        int slot = startMotion(engine, listener);
+        engine.advance(FRAME_INTERVAL_IN_NANOS);
+        engine.advance(2 * FRAME_INTERVAL_IN_NANOS);
+
+        engine.stop(slot);
+        assertTrue(engine.isIdle());
+        engine.getKinematics().setPosition(slot, 500, 800);
+        engine.getKinematics().setWallMotion(slot, 0, 0, 1000, 0, 1700);
+        engine.start(slot);
+        engine.advance(60 * FRAME_INTERVAL_IN_NANOS);
+
+        BubblesPhysicsEngine freshEngine = new BubblesPhysicsEngine();
+        RecordingListener freshListener = new RecordingListener();
+        startMotion(freshEngine, freshListener);
+        freshEngine.advance(FRAME_INTERVAL_IN_NANOS);
+        assertEquals(freshListener.x, listener.x, 0.01f);
+    }
+
+    @Test
+    public void motionSettlesOnTheWall() {
+        int slot = startMotion(engine, listener);
+
+        long frameTimeNanos = 0;
+        for (int frame = 0; frame < 600 && !engine.isIdle(); frame++) {
+            frameTimeNanos += FRAME_INTERVAL_IN_NANOS;
+            engine.advance(frameTimeNanos);
+        }
+
+        assertTrue(engine.isIdle());
+        assertEquals(slot, listener.restingSlot);
+        assertEquals(1000f, listener.x, 0f);
+    }
+
+    @Test
+    public void releasedSlotsAreNotNotified() {
+        int slot = startMotion(engine, listener);
+        int otherSlot = startMotion(engine, new RecordingListener());
+
+        engine.release(slot);
+        engine.advance(FRAME_INTERVAL_IN_NANOS);
+        engine.advance(2 * FRAME_INTERVAL_IN_NANOS);
+
+        assertFalse(engine.isIdle());
+        assertEquals(0, listener.moves);
+        engine.release(otherSlot);
+        assertTrue(engine.isIdle());
+    }
+
+    private static int startMotion(BubblesPhysicsEngine engine, BubblesPhysicsEngine.Listener listener) {
+        int slot = engine.allocate(listener);
+        engine.getKinematics().setPosition(slot, 500, 800);
+        engine.getKinematics().setWallMotion(slot, 0, 0, 1000, 0, 1700);
+        engine.start(slot);
+        return slot;
+    }
+
+    private static class RecordingListener implements BubblesPhysicsEngine.Listener {
+        private float x;
+        private int moves = 0;
+        private int restingSlot = BubblesKinematics.NO_SLOT;
+
+        @Override
+        public void onSlotMoved(int slot, float x, float y) {
+            this.x = x;
+            moves++;
+        }
+
+        @Override
+        public void onSlotAtRest(int slot) {
+            restingSlot = slot;
+        }
+    }
+}
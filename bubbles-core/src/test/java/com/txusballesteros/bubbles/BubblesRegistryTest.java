@@ -0,0 +1,181 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BubblesRegistryTest {
+    private BubblesRegistry<String> registry;
+
+    @Before
+    public void setUp() {
+        registry = new BubblesRegistry<>();
+    }
+
+    @Test
+    public void findByTagReturnsTheOldestItemOfTheChain() {
+        registry.add("a", "tag");
+        registry.add("b", "tag");
+        registry.add("c", "tag");
+
+        assertSame("a", registry.findByTag("tag"));
+    }
+
+    @Test
+    public void removingTheHeadPromotesTheNextItemOfTheChain() {
+        registry.add("a", "tag");
+        registry.add("b", "tag");
+        registry.add("c", "tag");
+
+        registry.remove("a");
+        assertSame("b", registry.findByTag("tag"));
+        registry.remove("b");
+        assertSame("c", registry.findByTag("tag"));
+        registry.remove("c");
+        assertNull(registry.findByTag("tag"));
+    }
+
+    @Test
+    public void removingTheTailKeepsTheChainAppendable() {
+        registry.add("a", "tag");
+        registry.add("b", "tag");
+        registry.add("c", "tag");
+
+        registry.remove("c");
+        registry.remove("b");
+        registry.add("d", "tag");
+        registry.remove("a");
+
+        assertSame("d", registry.findByTag("tag"));
+    }
+
+    @Test
+    public void removingFromTheMiddleKeepsTheRestOfTheChain() {
+        registry.add("a", "tag");
+        registry.add("b", "tag");
+        registry.add("c", "tag");
+
+        registry.remove("b");
+        registry.remove("a");
+
+        assertSame("c", registry.findByTag("tag"));
+        registry.remove("c");
+        assertNull(registry.findByTag("tag"));
+    }
+
+    @Test
+    public void chainsOfDifferentTagsAreIndependent() {
+        registry.add("a", "first");
+        registry.add("b", "second");
+        registry.add("c", "first");
+        registry.add("d", null);
+
+        registry.remove("a");
+
+        assertSame("c", registry.findByTag("first"));
+        assertSame("b", registry.findByTag("second"));
+        assertNull(registry.findByTag(null));
+    }
+
+    @Test
+    public void retaggedItemMovesToTheChainOfItsNewTag() {
+        registry.add("a", "first");
+        registry.add("b", "first");
+        registry.add("c", "second");
+
+        assertTrue(registry.setTag("a", "second"));
+
+        assertSame("b", registry.findByTag("first"));
+        assertSame("c", registry.findByTag("second"));
+        registry.remove("c");
+        assertSame("a", registry.findByTag("second"));
+        registry.remove("b");
+        assertNull(registry.findByTag("first"));
+    }
+
+    @Test
+    public void retaggingKeepsTheInsertionOrder() {
+        registry.add("a", "tag");
+        registry.add("b", null);
+
+        registry.setTag("a", null);
+        registry.setTag("b", "tag");
+
+        assertNull(registry.findByTag(null));
+        assertSame("b", registry.findByTag("tag"));
+        assertEquals(Arrays.asList("a", "b"), registry.clear());
+    }
+
+    @Test
+    public void retaggingWithTheSameTagKeepsTheChain() {
+        registry.add("a", "tag");
+        registry.add("b", "tag");
+
+        registry.setTag("a", new String("tag"));
+
+        assertSame("a", registry.findByTag("tag"));
+        assertFalse(registry.setTag("c", "tag"));
+    }
+
+    @Test
+    public void duplicatedItemsAreNotAdded() {
+        assertTrue(registry.add("a", "tag"));
+        assertFalse(registry.add("a", "other"));
+
+        assertEquals(1, registry.size());
+        assertNull(registry.findByTag("other"));
+        assertFalse(registry.remove("b"));
+    }
+
+    @Test
+    public void itemsKeepTheirInsertionOrder() {
+        registry.add("c", "tag");
+        registry.add("a", null);
+        registry.add("b", "tag");
+        registry.remove("a");
+        registry.add("a", "tag");
+
+        List<String> iterated = new ArrayList<>();
+        for (String item : registry) {
+            iterated.add(item);
+        }
+
+        assertEquals(Arrays.asList("c", "b", "a"), iterated);
+        assertEquals(Arrays.asList("c", "b", "a"), registry.clear());
+        assertEquals(0, registry.size());
+        assertNull(registry.findByTag("tag"));
+    }
+}
@@ -24,11 +24,15 @@
  */
 package com.txusballesteros.bubbles;
 
+import android.animation.Animator;
 import android.animation.AnimatorInflater;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.content.Context;
 import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.View;
 import android.view.WindowManager;
 import android.view.animation.Animation;
 import android.view.animation.AnimationSet;
@@ -39,6 +43,29 @@ class BubbleBaseLayout extends FrameLayout {
     private WindowManager windowManager;
     private WindowManager.LayoutParams params;
     private BubblesLayoutCoordinator layoutCoordinator;
+    private BubblesLayoutBatcher layoutBatcher;
+    private boolean layoutUpdatePending = false;
+    private int committedX = Integer.MIN_VALUE;
+    private int committedY = Integer.MIN_VALUE;
+    private final SparseArray<Animator> animators = new SparseArray<>();
+    private BubblesCompositorLayout compositor;
+    private BubblesMetrics metrics;
+    private int runningAnimators = 0;
+    private final Animator.AnimatorListener animatorsListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+            if (runningAnimators++ == 0) {
+                onAnimatorsRunningChanged(true);
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (runningAnimators > 0 && --runningAnimators == 0) {
+                onAnimatorsRunningChanged(false);
+            }
+        }
+    };
 
     void setLayoutCoordinator(BubblesLayoutCoordinator layoutCoordinator) {
         this.layoutCoordinator = layoutCoordinator;
@@ -64,6 +91,120 @@ class BubbleBaseLayout extends FrameLayout {
         return this.params;
     }
 
+    void setCompositor(BubblesCompositorLayout compositor) {
+        this.compositor = compositor;
+    }
+
+    BubblesCompositorLayout getCompositor() {
+        return compositor;
+    }
+
+    void setMetrics(BubblesMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    BubblesMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Pushes the view params to the window, no matter if they changed.
+     */
+    void updateWindowLayout() {
+        windowManager.updateViewLayout(this, params);
+        if (metrics != null) {
+            metrics.onWindowUpdated();
+        }
+    }
+
+    void setLayoutBatcher(BubblesLayoutBatcher layoutBatcher) {
+        this.layoutBatcher = layoutBatcher;
+    }
+
+    /**
+     * Queues the current view params to be pushed to the window on the next frame.
+     */
+    void requestViewParamsUpdate() {
+        if (layoutBatcher != null) {
+            layoutBatcher.scheduleLayoutUpdate(this);
+        } else {
+            updateWindowLayout();
+        }
+    }
+
+    /**
+     * Pushes the current view params to the window right away, for writes that
+     * already happen inside a frame callback.
+     */
+    void commitViewParamsUpdate() {
+        if (layoutBatcher != null) {
+            layoutBatcher.commitLayoutUpdate(this);
+        } else {
+            updateWindowLayout();
+        }
+    }
+
+    boolean isLayoutUpdatePending() {
+        return layoutUpdatePending;
+    }
+
+    void setLayoutUpdatePending(boolean layoutUpdatePending) {
+        this.layoutUpdatePending = layoutUpdatePending;
+    }
+
+    boolean isViewParamsCommitted(int x, int y) {
+        return committedX == x && committedY == y;
+    }
+
+    void markViewParamsCommitted() {
+        committedX = params.x;
+        committedY = params.y;
+    }
+
+    /**
+     * Plays an animator resource on the given target, reusing the instance this view
+     * already owns for that resource. Animators of this view that are still running
+     * are cancelled first, so they don't fight over the same properties.
+     */
+    void playAnimator(int animatorResourceId, View target) {
+        Animator animator = prepareAnimator(animatorResourceId, target);
+        cancelAnimators();
+        animator.start();
+    }
+
+    void cancelAnimators() {
+        for (int i = 0; i < animators.size(); i++) {
+            Animator runningAnimator = animators.valueAt(i);
+            if (runningAnimator.isStarted()) {
+                runningAnimator.cancel();
+            }
+        }
+    }
+
+    Animator prepareAnimator(int animatorResourceId, View target) {
+        Animator animator = animators.get(animatorResourceId);
+        if (animator == null) {
+            animator = BubblesAnimatorCache.getInstance().obtain(getContext(), animatorResourceId);
+            animator.addListener(animatorsListener);
+            animators.put(animatorResourceId, animator);
+        }
+        animator.setTarget(target);
+        return animator;
+    }
+
+    /**
+     * Called when the first animator played by this view starts, and when the last
+     * running one ends.
+     */
+    void onAnimatorsRunningChanged(boolean running) { }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        committedX = Integer.MIN_VALUE;
+        committedY = Integer.MIN_VALUE;
+    }
+
     public BubbleBaseLayout(Context context) {
         super(context);
     }
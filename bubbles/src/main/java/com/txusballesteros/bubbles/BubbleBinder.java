@@ -0,0 +1,39 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.content.Context;
+
+/**
+ * Creates and binds the bubbles added with BubblesManager.addBubble(Object, int, int). Bubbles
+ * removed from screen are unbound and kept to be bound again to other items, instead of being
+ * inflated from scratch. It also receives the updates posted with BubbleLayout.postUpdate() to
+ * the bubbles it creates, unless they have their own OnBubbleUpdateListener.
+ */
+public interface BubbleBinder extends BubbleLayout.OnBubbleUpdateListener {
+    BubbleLayout onCreateBubble(Context context);
+    void onBindBubble(BubbleLayout bubble, Object item);
+    void onUnbindBubble(BubbleLayout bubble);
+}
@@ -5,19 +5,33 @@ import android.view.animation.Interpolator;
 /**
  * Created by lazarristic on 08/04/2019.
  * Copyright (c) 2019 bubbles-for-android. All rights reserved.
+ *
+ * The curve is baked into a lookup table when the interpolator is created.
  */
 public class BubbleBounceInterpolator implements Interpolator {
-
-    private double amplitude = 1;
-    private double frequency = 10;
+    private final BubbleLookupInterpolator curve;
 
     public BubbleBounceInterpolator(double amplitude, double frequency) {
-        this.amplitude = amplitude;
-        this.frequency = frequency;
+        curve = new BubbleLookupInterpolator(new BounceCurve(amplitude, frequency));
     }
 
     @Override
     public float getInterpolation(float time) {
-        return (float) (-1 * Math.pow(Math.E, -time/ amplitude) * Math.cos(frequency + time) + 1);
+        return curve.getInterpolation(time);
+    }
+
+    private static class BounceCurve implements Interpolator {
+        private final double amplitude;
+        private final double frequency;
+
+        private BounceCurve(double amplitude, double frequency) {
+            this.amplitude = amplitude;
+            this.frequency = frequency;
+        }
+
+        @Override
+        public float getInterpolation(float time) {
+            return (float) (-1 * Math.pow(Math.E, -time/ amplitude) * Math.cos(frequency + time) + 1);
+        }
     }
 }
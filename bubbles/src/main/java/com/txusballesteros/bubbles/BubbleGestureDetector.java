@@ -0,0 +1,208 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Tap, long-press, drag and fling recognizer for a bubble. It keeps a single velocity
+ * tracker and long-press runnable for the lifetime of the bubble, timing everything with
+ * the event timestamps, so a gesture doesn't allocate once the first one is done.
+ */
+final class BubbleGestureDetector {
+    private static final int HOLDING_TIME = 1000;
+    private static final int TOUCH_TIME_THRESHOLD = 150;
+
+    private final View view;
+    private final Listener listener;
+    private final int touchSlopSquare;
+    private final int minimumFlingVelocity;
+    private final int maximumFlingVelocity;
+    private VelocityTracker velocityTracker;
+    private float downRawX;
+    private float downRawY;
+    private long downTime;
+    private boolean dragging = false;
+    private boolean longPressed = false;
+    private boolean tracking = false;
+    private final BubbleTouchPredictor predictor = new BubbleTouchPredictor();
+    private float predictionHorizonInMs = 0;
+
+    private final Runnable longPressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            longPressed = true;
+            listener.onGestureLongPress();
+        }
+    };
+
+    interface Listener {
+        void onGestureDown(MotionEvent event);
+        void onGestureDrag(MotionEvent event);
+        void onGestureRelease(float velocityX, float velocityY, boolean fling);
+        void onGestureCancel();
+        void onGestureTap();
+        void onGestureLongPress();
+    }
+
+    BubbleGestureDetector(View view, Listener listener) {
+        this.view = view;
+        this.listener = listener;
+        ViewConfiguration configuration = ViewConfiguration.get(view.getContext());
+        int touchSlop = configuration.getScaledTouchSlop();
+        touchSlopSquare = touchSlop * touchSlop;
+        minimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        maximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    void onTouchEvent(MotionEvent event) {
+        if (!tracking && event.getActionMasked() != MotionEvent.ACTION_DOWN) {
+            // Recycled in the middle of a gesture, e.g. the bubble moved to another window. The
+            // rest of it is ignored until the next ACTION_DOWN.
+            return;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                if (velocityTracker == null) {
+                    velocityTracker = VelocityTracker.obtain();
+                } else {
+                    velocityTracker.clear();
+                }
+                addMovement(event);
+                downRawX = event.getRawX();
+                downRawY = event.getRawY();
+                downTime = event.getEventTime();
+                predictor.reset();
+                predictor.addSample(downRawX, downRawY, downTime);
+                dragging = false;
+                longPressed = false;
+                tracking = true;
+                view.removeCallbacks(longPressRunnable);
+                view.postDelayed(longPressRunnable, HOLDING_TIME);
+                listener.onGestureDown(event);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                addMovement(event);
+                addPredictorSamples(event);
+                if (!dragging) {
+                    float deltaX = event.getRawX() - downRawX;
+                    float deltaY = event.getRawY() - downRawY;
+                    if ((deltaX * deltaX) + (deltaY * deltaY) > touchSlopSquare) {
+                        dragging = true;
+                        view.removeCallbacks(longPressRunnable);
+                    }
+                }
+                if (dragging) {
+                    predictor.predict(predictionHorizonInMs, maximumFlingVelocity);
+                    listener.onGestureDrag(event);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                tracking = false;
+                addMovement(event);
+                view.removeCallbacks(longPressRunnable);
+                if (dragging && predictionHorizonInMs > 0) {
+                    // The last drag may have been predicted ahead, the bubble is released where
+                    // the finger actually is.
+                    addPredictorSamples(event);
+                    predictor.predict(0, maximumFlingVelocity);
+                    listener.onGestureDrag(event);
+                }
+                velocityTracker.computeCurrentVelocity(1000, maximumFlingVelocity);
+                float velocityX = velocityTracker.getXVelocity();
+                float velocityY = velocityTracker.getYVelocity();
+                boolean fling = dragging && (Math.abs(velocityX) > minimumFlingVelocity
+                        || Math.abs(velocityY) > minimumFlingVelocity);
+                listener.onGestureRelease(velocityX, velocityY, fling);
+                if (!dragging && !longPressed && event.getEventTime() - downTime < TOUCH_TIME_THRESHOLD) {
+                    listener.onGestureTap();
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                tracking = false;
+                view.removeCallbacks(longPressRunnable);
+                listener.onGestureCancel();
+                break;
+        }
+    }
+
+    /**
+     * @param predictionHorizonInMs how far ahead of the last touch sample getDragRawX() and
+     *                              getDragRawY() predict the finger position, 0 to disable it
+     */
+    void setPredictionHorizon(float predictionHorizonInMs) {
+        this.predictionHorizonInMs = Math.max(0, predictionHorizonInMs);
+    }
+
+    /**
+     * @return raw x of the finger while dragging, predicted if a prediction horizon is set
+     */
+    float getDragRawX() {
+        return predictor.getPredictedX();
+    }
+
+    /**
+     * @return raw y of the finger while dragging, predicted if a prediction horizon is set
+     */
+    float getDragRawY() {
+        return predictor.getPredictedY();
+    }
+
+    boolean isTracking() {
+        return tracking;
+    }
+
+    void recycle() {
+        tracking = false;
+        view.removeCallbacks(longPressRunnable);
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    private void addPredictorSamples(MotionEvent event) {
+        // Batched samples share the window offset of the event, the window only moves between events.
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        for (int i = 0; i < event.getHistorySize(); i++) {
+            predictor.addSample(event.getHistoricalX(i) + offsetX, event.getHistoricalY(i) + offsetY,
+                    event.getHistoricalEventTime(i));
+        }
+        predictor.addSample(event.getRawX(), event.getRawY(), event.getEventTime());
+    }
+
+    private void addMovement(MotionEvent event) {
+        // The window follows the finger, so velocity has to be tracked in screen coordinates.
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        velocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+}
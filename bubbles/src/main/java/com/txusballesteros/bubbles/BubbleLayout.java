@@ -24,24 +24,46 @@
  */
 package com.txusballesteros.bubbles;
 
-import android.animation.AnimatorInflater;
-import android.animation.AnimatorSet;
+import android.app.AlertDialog;
 import android.content.Context;
-import android.graphics.Point;
-import android.os.CountDownTimer;
-import android.os.Handler;
-import android.os.Looper;
+import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.DisplayMetrics;
-import android.view.Display;
+import android.util.SparseIntArray;
+import android.view.Gravity;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.view.animation.Animation;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class BubbleLayout extends BubbleBaseLayout {
-    private final static int HOLDING_TIME = 1000;
+    /**
+     * The bubble content is drawn as any other view.
+     */
+    public static final int RENDER_POLICY_NONE = 0;
+    /**
+     * The bubble content is rendered into a hardware layer while it is dragged, moved or
+     * animated, and the layer is dropped afterwards.
+     */
+    public static final int RENDER_POLICY_HARDWARE_LAYER = 1;
+    /**
+     * The bubble content is kept in a hardware layer the whole time it is on screen, so the
+     * layer works as a cached snapshot that is only rendered again when the content changes.
+     */
+    public static final int RENDER_POLICY_SNAPSHOT = 2;
+
+    private final static long MOVE_ANIMATION_DURATION = 400;
+    private final static long EXPAND_ANIMATION_DURATION = 250;
+    private final static int LAYER_REASON_DRAG = 1;
+    private final static int LAYER_REASON_MOTION = 1 << 1;
+    private final static int LAYER_REASON_ANIMATION = 1 << 2;
 
     private float initialTouchX;
     private float initialTouchY;
@@ -52,16 +74,46 @@ public class BubbleLayout extends BubbleBaseLayout {
     private OnHoldingBubbleListener onHoldingBubbleListener;
     private OnBubbleStickToWallListener onBubbleStickToWallListener;
     private OnBubbleGoToCenterListener onBubbleGoToCenterListener;
-    private static final int TOUCH_TIME_THRESHOLD = 150;
-    private long lastTouchDown;
+    private OnBubbleUpdateListener onBubbleUpdateListener;
+    private final UpdateDispatcher updateDispatcher = new UpdateDispatcher();
     private MoveAnimator animator;
-    private int width;
-    private int height;
-    private WindowManager windowManager;
+    private final WallMotionListener wallMotionListener = new WallMotionListener();
+    private int slot = BubblesKinematics.NO_SLOT;
+    private long wallMotionStartTime;
+    private boolean stickingToLeftSide;
+    private final Rect movementBounds = new Rect();
     private boolean shouldStickToWall = true;
     private Object tag;
-    private CountDownTimer holdingTimer;
+    private BubbleGestureDetector gestureDetector;
     private View dialogView;
+    private AlertDialog dialog;
+    private View dialogContent;
+    private OnBubbleTouchListener onBubbleTouchListener;
+    private OnBubbleTagChangeListener onBubbleTagChangeListener;
+    private OnBubbleExpandListener onBubbleExpandListener;
+    private boolean expanded = false;
+    private boolean collapsing = false;
+    private int collapsedX;
+    private int collapsedY;
+    private final SparseIntArray collapsedChildrenVisibility = new SparseIntArray();
+    private final Rect dialogViewHitRect = new Rect();
+    private final Runnable finishCollapseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            finishCollapse();
+        }
+    };
+    private BubblesDisplayGeometry displayGeometry;
+    private BubblesAnimationScheduler animationScheduler;
+    private long entryAnimationDelay = 0;
+    private boolean entryAnimationSkipped = false;
+    private int renderPolicy = RENDER_POLICY_NONE;
+    private boolean renderPolicyOverridden = false;
+    private int layerReasons = 0;
+    private int defaultLayerType = LAYER_TYPE_NONE;
+    private boolean touchPrediction = false;
+    private boolean touchPredictionOverridden = false;
+    private boolean recyclable = false;
 
     public void setOnBubbleRemoveListener(OnBubbleRemoveListener listener) {
         onBubbleRemoveListener = listener;
@@ -83,24 +135,33 @@ public class BubbleLayout extends BubbleBaseLayout {
         onBubbleGoToCenterListener = listener;
     }
 
+    public void setOnBubbleExpandListener(OnBubbleExpandListener listener) {
+        onBubbleExpandListener = listener;
+    }
+
+    public void setOnBubbleUpdateListener(OnBubbleUpdateListener listener) {
+        onBubbleUpdateListener = listener;
+    }
+
+    OnBubbleUpdateListener getOnBubbleUpdateListener() {
+        return onBubbleUpdateListener;
+    }
+
     public BubbleLayout(Context context) {
         super(context);
         animator = new MoveAnimator();
-        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         initializeView();
     }
 
     public BubbleLayout(Context context, AttributeSet attrs) {
         super(context, attrs);
         animator = new MoveAnimator();
-        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         initializeView();
     }
 
     public BubbleLayout(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         animator = new MoveAnimator();
-        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         initializeView();
     }
 
@@ -108,12 +169,148 @@ public class BubbleLayout extends BubbleBaseLayout {
         this.shouldStickToWall = shouldStick;
     }
 
+    /**
+     * Duration used by goToCenter() and goTo() animations.
+     * @param durationInMs animation duration in milliseconds
+     */
+    public void setMoveAnimationDuration(long durationInMs) {
+        animator.setDuration(durationInMs);
+    }
+
+    /**
+     * Easing curve used by goToCenter() and goTo() animations.
+     * @param interpolator time interpolator, evaluated once per display frame
+     */
+    public void setMoveAnimationInterpolator(Interpolator interpolator) {
+        animator.setInterpolator(interpolator);
+    }
+
+    /**
+     * How the bubble content is rendered while it is dragged or animated. Overrides the policy
+     * set with BubblesManager.Builder.setRenderPolicy().
+     * @param renderPolicy one of RENDER_POLICY_NONE, RENDER_POLICY_HARDWARE_LAYER or
+     *                     RENDER_POLICY_SNAPSHOT
+     */
+    public void setRenderPolicy(int renderPolicy) {
+        renderPolicyOverridden = true;
+        applyRenderPolicy(renderPolicy);
+    }
+
+    /**
+     * Places the bubble where the finger is predicted to be by the next frame while it is
+     * dragged, from the recent touch samples, so it doesn't trail behind fast drags. Overrides
+     * the setting of BubblesManager.Builder.setTouchPrediction().
+     * @param touchPrediction true to predict the finger position
+     */
+    public void setTouchPrediction(boolean touchPrediction) {
+        touchPredictionOverridden = true;
+        this.touchPrediction = touchPrediction;
+    }
+
+    public boolean isTouchPrediction() {
+        return touchPrediction;
+    }
+
+    void setDefaultTouchPrediction(boolean touchPrediction) {
+        if (!touchPredictionOverridden) {
+            this.touchPrediction = touchPrediction;
+        }
+    }
+
+    public int getRenderPolicy() {
+        return renderPolicy;
+    }
+
+    void setDefaultRenderPolicy(int renderPolicy) {
+        if (!renderPolicyOverridden) {
+            applyRenderPolicy(renderPolicy);
+        }
+    }
+
+    private void applyRenderPolicy(int renderPolicy) {
+        if (this.renderPolicy == RENDER_POLICY_NONE) {
+            defaultLayerType = getLayerType();
+        }
+        this.renderPolicy = renderPolicy;
+        if (renderPolicy != RENDER_POLICY_NONE) {
+            requireHardwareAcceleration();
+        }
+        updateLayerType();
+    }
+
+    /**
+     * Without a hardware accelerated window the layers would fall back to software drawing
+     * caches. Acceleration is decided when a window is added, so a window of its own that isn't
+     * accelerated yet is added again. Compositor windows are always accelerated.
+     */
+    private void requireHardwareAcceleration() {
+        WindowManager.LayoutParams params = getViewParams();
+        if (params == null) {
+            return;
+        }
+        params.flags |= WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
+        if (getCompositor() == null && getParent() != null && !isHardwareAccelerated()) {
+            skipEntryAnimation();
+            getWindowManager().removeViewImmediate(this);
+            getWindowManager().addView(this, params);
+            if (getMetrics() != null) {
+                getMetrics().onWindowRemoved();
+                getMetrics().onWindowAdded();
+            }
+        }
+    }
+
+    private void setLayerReason(int reason, boolean enabled) {
+        int reasons = enabled ? (layerReasons | reason) : (layerReasons & ~reason);
+        if (reasons != layerReasons) {
+            layerReasons = reasons;
+            updateLayerType();
+        }
+    }
+
+    private void updateLayerType() {
+        boolean useLayer;
+        switch (renderPolicy) {
+            case RENDER_POLICY_HARDWARE_LAYER:
+                useLayer = layerReasons != 0;
+                break;
+            case RENDER_POLICY_SNAPSHOT:
+                useLayer = true;
+                break;
+            default:
+                useLayer = false;
+                break;
+        }
+        int layerType = useLayer ? LAYER_TYPE_HARDWARE : defaultLayerType;
+        if (getLayerType() != layerType) {
+            setLayerType(layerType, null);
+        }
+    }
+
+    @Override
+    void onAnimatorsRunningChanged(boolean running) {
+        setLayerReason(LAYER_REASON_ANIMATION, running);
+    }
+
+    /**
+     * Queues a partial content update for the OnBubbleUpdateListener. All the payloads posted
+     * before the next frame are delivered together in one call at the start of that frame, so
+     * the views they touch are laid out once.
+     * @param payload what changed, equal payloads are delivered once. Use null for everything.
+     */
+    public void postUpdate(Object payload) {
+        updateDispatcher.post(payload);
+    }
+
     public Object getTag() {
         return tag;
     }
 
     public void setTag(Object tag) {
         this.tag = tag;
+        if (onBubbleTagChangeListener != null) {
+            onBubbleTagChangeListener.onBubbleTagChanged(this);
+        }
     }
 
     public View getDialogView() {
@@ -124,6 +321,70 @@ public class BubbleLayout extends BubbleBaseLayout {
         dialogView = view;
     }
 
+    /**
+     * Only bubbles created by the BubbleBinder are recyclable, the ones the app creates itself
+     * keep its listeners and references and are never handed out for other items.
+     */
+    void setRecyclable(boolean recyclable) {
+        this.recyclable = recyclable;
+    }
+
+    boolean isRecyclable() {
+        return recyclable;
+    }
+
+    /**
+     * Brings a removed bubble back to its initial state so it can be added again.
+     */
+    void reset() {
+        if (expanded) {
+            collapse();
+        }
+        if (collapsing) {
+            dialogView.animate().cancel();
+            finishCollapse();
+        }
+        stopMotion();
+        releaseSlot();
+        gestureDetector.recycle();
+        cancelAnimators();
+        setLayerReason(LAYER_REASON_DRAG, false);
+        setScaleX(1);
+        setScaleY(1);
+        setTranslationX(0);
+        setTranslationY(0);
+        setAlpha(1);
+        entryAnimationDelay = 0;
+        entryAnimationSkipped = false;
+        tag = null;
+        updateDispatcher.clear();
+    }
+
+    /**
+     * Dialog window built for this bubble and the content view it was built with, kept to be
+     * shown again on the next addDialogView().
+     */
+    void setDialog(AlertDialog dialog, View content) {
+        this.dialog = dialog;
+        this.dialogContent = content;
+    }
+
+    AlertDialog getDialog() {
+        return dialog;
+    }
+
+    View getDialogContent() {
+        return dialogContent;
+    }
+
+    void setOnBubbleTouchListener(OnBubbleTouchListener listener) {
+        onBubbleTouchListener = listener;
+    }
+
+    void setOnBubbleTagChangeListener(OnBubbleTagChangeListener listener) {
+        onBubbleTagChangeListener = listener;
+    }
+
     void notifyBubbleRemoved() {
         if (onBubbleRemoveListener != null) {
             onBubbleRemoveListener.onBubbleRemoved(this);
@@ -132,95 +393,256 @@ public class BubbleLayout extends BubbleBaseLayout {
 
     private void initializeView() {
         setClickable(true);
+        gestureDetector = new BubbleGestureDetector(this, new GestureListener());
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        playAnimation();
+        prepareClickAnimations();
+        if (entryAnimationSkipped) {
+            entryAnimationSkipped = false;
+        } else {
+            playAnimation();
+        }
+    }
+
+    private void prepareClickAnimations() {
+        if (!isInEditMode()) {
+            prepareAnimator(R.animator.bubble_down_click_animator, this);
+            prepareAnimator(R.animator.bubble_up_click_animator, this);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopMotion();
+        releaseSlot();
+        gestureDetector.recycle();
+        setLayerReason(LAYER_REASON_DRAG, false);
+    }
+
+    boolean isBeingTouched() {
+        return gestureDetector.isTracking();
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (event != null) {
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    initialX = getViewParams().x;
-                    initialY = getViewParams().y;
-                    initialTouchX = event.getRawX();
-                    initialTouchY = event.getRawY();
-                    playAnimationClickDown();
-                    lastTouchDown = System.currentTimeMillis();
-                    updateSize();
-                    animator.stop();
-
-                    setTimer();
-                    break;
-                case MotionEvent.ACTION_MOVE:
-                    int x = initialX + (int) (event.getRawX() - initialTouchX);
-                    int y = initialY + (int) (event.getRawY() - initialTouchY);
-                    getViewParams().x = x;
-                    getViewParams().y = y;
-                    getWindowManager().updateViewLayout(this, getViewParams());
-                    if (getLayoutCoordinator() != null) {
-                        getLayoutCoordinator().notifyBubblePositionChanged(this, x, y);
-                    }
-                    break;
-                case MotionEvent.ACTION_UP:
-                    goToWall();
-                    if (getLayoutCoordinator() != null) {
-                        getLayoutCoordinator().notifyBubbleRelease(this);
-                        playAnimationClickUp();
-                    }
-                    if (System.currentTimeMillis() - lastTouchDown < TOUCH_TIME_THRESHOLD) {
-                        if (onBubbleClickListener != null) {
-                            onBubbleClickListener.onBubbleClick(this);
-                        }
-                    }
-
-                    stopTimer();
-                    break;
+        if (expanded || collapsing) {
+            // Touches not taken by the dialog view landed outside of it.
+            if (expanded && event != null && event.getActionMasked() == MotionEvent.ACTION_UP) {
+                dialogView.getHitRect(dialogViewHitRect);
+                if (!dialogViewHitRect.contains((int) event.getX(), (int) event.getY())) {
+                    collapse();
+                }
             }
+            return true;
+        }
+        if (event != null) {
+            gestureDetector.onTouchEvent(event);
         }
         return super.onTouchEvent(event);
     }
 
-    private void playAnimation() {
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        if (expanded && event.getKeyCode() == KeyEvent.KEYCODE_BACK) {
+            // The dialog view gets the key first, as it would inside a dialog window.
+            if (!super.dispatchKeyEvent(event)
+                    && event.getAction() == KeyEvent.ACTION_UP && !event.isCanceled()) {
+                collapse();
+            }
+            return true;
+        }
+        return super.dispatchKeyEvent(event);
+    }
+
+    private class GestureListener implements BubbleGestureDetector.Listener {
+        @Override
+        public void onGestureDown(MotionEvent event) {
+            initialX = getViewParams().x;
+            initialY = getViewParams().y;
+            initialTouchX = event.getRawX();
+            initialTouchY = event.getRawY();
+            gestureDetector.setPredictionHorizon(touchPrediction ? getDisplayGeometry().getFrameInterval() : 0);
+            setLayerReason(LAYER_REASON_DRAG, true);
+            playAnimationClickDown();
+            updateSize();
+            stopMotion();
+            if (getLayoutCoordinator() != null) {
+                getLayoutCoordinator().notifyBubbleTouched(BubbleLayout.this);
+            }
+            if (onBubbleTouchListener != null) {
+                onBubbleTouchListener.onBubbleTouched(BubbleLayout.this);
+            }
+        }
+
+        @Override
+        public void onGestureDrag(MotionEvent event) {
+            int x = initialX + (int) (gestureDetector.getDragRawX() - initialTouchX);
+            int y = initialY + (int) (gestureDetector.getDragRawY() - initialTouchY);
+            setPosition(x, y);
+            if (getMetrics() != null) {
+                getMetrics().onDragStarted();
+            }
+            if (getLayoutCoordinator() != null) {
+                getLayoutCoordinator().notifyBubblePositionChanged(BubbleLayout.this, x, y);
+            }
+        }
+
+        @Override
+        public void onGestureRelease(float velocityX, float velocityY, boolean fling) {
+            setLayerReason(LAYER_REASON_DRAG, false);
+            if (getMetrics() != null) {
+                getMetrics().onDragEnded();
+            }
+            if (fling) {
+                goToWall(velocityX, velocityY);
+            } else {
+                goToWall(0, 0);
+            }
+            if (getLayoutCoordinator() != null) {
+                getLayoutCoordinator().notifyBubbleRelease(BubbleLayout.this);
+                playAnimationClickUp();
+            }
+        }
+
+        @Override
+        public void onGestureCancel() {
+            setLayerReason(LAYER_REASON_DRAG, false);
+            if (getMetrics() != null) {
+                getMetrics().onDragEnded();
+            }
+            goToWall(0, 0);
+            if (getLayoutCoordinator() != null) {
+                getLayoutCoordinator().notifyBubbleCancel(BubbleLayout.this);
+                playAnimationClickUp();
+            }
+        }
+
+        @Override
+        public void onGestureTap() {
+            if (getMetrics() != null) {
+                getMetrics().onBubbleTapped();
+            }
+            if (onBubbleClickListener != null) {
+                onBubbleClickListener.onBubbleClick(BubbleLayout.this);
+            }
+        }
+
+        @Override
+        public void onGestureLongPress() {
+            if (onHoldingBubbleListener != null) {
+                onHoldingBubbleListener.onHoldingBubble(BubbleLayout.this);
+            }
+        }
+    }
+
+    void setEntryAnimationDelay(long entryAnimationDelay) {
+        this.entryAnimationDelay = entryAnimationDelay;
+    }
+
+    /**
+     * Keeps the bubble from playing the entry animation again when it moves to another window.
+     */
+    void skipEntryAnimation() {
+        entryAnimationSkipped = true;
+    }
+
+    void playAnimation() {
         if (!isInEditMode()) {
-            AnimatorSet animator = (AnimatorSet) AnimatorInflater
-                    .loadAnimator(getContext(), R.animator.bubble_shown_animator);
-            animator.setTarget(this);
-            animator.start();
+            prepareAnimator(R.animator.bubble_shown_animator, this).setStartDelay(entryAnimationDelay);
+            if (entryAnimationDelay > 0) {
+                setScaleX(0);
+                setScaleY(0);
+            }
+            playAnimator(R.animator.bubble_shown_animator, this);
+            entryAnimationDelay = 0;
         }
     }
 
     private void playAnimationClickDown() {
         if (!isInEditMode()) {
-            AnimatorSet animator = (AnimatorSet) AnimatorInflater
-                    .loadAnimator(getContext(), R.animator.bubble_down_click_animator);
-            animator.setTarget(this);
-            animator.start();
+            playAnimator(R.animator.bubble_down_click_animator, this);
         }
     }
 
     private void playAnimationClickUp() {
         if (!isInEditMode()) {
-            AnimatorSet animator = (AnimatorSet) AnimatorInflater
-                    .loadAnimator(getContext(), R.animator.bubble_up_click_animator);
-            animator.setTarget(this);
-            animator.start();
+            playAnimator(R.animator.bubble_up_click_animator, this);
         }
     }
 
     private void updateSize() {
-        DisplayMetrics metrics = new DisplayMetrics();
-        windowManager.getDefaultDisplay().getMetrics(metrics);
-        Display display = getWindowManager().getDefaultDisplay();
-        Point size = new Point();
-        display.getSize(size);
-        width = (size.x - this.getWidth());
-        height = (size.y - this.getHeight());
+        updateMovementBounds();
+        getAnimationScheduler().getKinematics().setSize(getSlot(), getMeasuredWidth(), getMeasuredHeight());
+    }
+
+    /**
+     * Positions the bubble can take without leaving the usable bounds of the screen, so it never
+     * rests under the status bar.
+     */
+    private void updateMovementBounds() {
+        Rect usableBounds = getDisplayGeometry().getUsableBounds();
+        movementBounds.set(usableBounds.left, usableBounds.top,
+                Math.max(usableBounds.left, usableBounds.right - getWidth()),
+                Math.max(usableBounds.top, usableBounds.bottom - getHeight()));
+    }
 
+    void setDisplayGeometry(BubblesDisplayGeometry displayGeometry) {
+        this.displayGeometry = displayGeometry;
+    }
+
+    void setAnimationScheduler(BubblesAnimationScheduler animationScheduler) {
+        stopMotion();
+        releaseSlot();
+        this.animationScheduler = animationScheduler;
+    }
+
+    /**
+     * @return the slot holding the kinematic state of this bubble, allocated on first use
+     */
+    private int getSlot() {
+        if (slot == BubblesKinematics.NO_SLOT) {
+            slot = getAnimationScheduler().allocateSlot(wallMotionListener);
+            getAnimationScheduler().getKinematics().setPosition(slot, getViewParams().x, getViewParams().y);
+        }
+        return slot;
+    }
+
+    private void releaseSlot() {
+        if (slot != BubblesKinematics.NO_SLOT) {
+            getAnimationScheduler().releaseSlot(slot);
+            slot = BubblesKinematics.NO_SLOT;
+        }
+    }
+
+    /**
+     * Moves the bubble on the next frame. The position is written to its kinematic state and
+     * the window params are rendered from it.
+     */
+    void setPosition(int x, int y) {
+        writePosition(x, y);
+        requestViewParamsUpdate();
+    }
+
+    int findDropTarget(BubbleDropTargetIndex index) {
+        return getAnimationScheduler().getKinematics().findDropTarget(getSlot(), index);
+    }
+
+    private BubblesAnimationScheduler getAnimationScheduler() {
+        if (animationScheduler == null) {
+            animationScheduler = new BubblesAnimationScheduler();
+        }
+        return animationScheduler;
+    }
+
+    private BubblesDisplayGeometry getDisplayGeometry() {
+        if (displayGeometry == null) {
+            displayGeometry = new BubblesDisplayGeometry(getContext());
+        }
+        return displayGeometry;
     }
 
     public interface OnBubbleRemoveListener {
@@ -243,15 +665,75 @@ public class BubbleLayout extends BubbleBaseLayout {
         void onBubbleGoToCenterListener(BubbleLayout bubble, int oldX, int oldY);
     }
 
+    public interface OnBubbleExpandListener {
+        void onBubbleExpanded(BubbleLayout bubble);
+        void onBubbleCollapsed(BubbleLayout bubble);
+    }
+
+    interface OnBubbleTouchListener {
+        void onBubbleTouched(BubbleLayout bubble);
+    }
+
+    interface OnBubbleTagChangeListener {
+        void onBubbleTagChanged(BubbleLayout bubble);
+    }
+
+    public interface OnBubbleUpdateListener {
+        void onBubbleUpdate(BubbleLayout bubble, List<Object> payloads);
+    }
+
     public void goToWall() {
+        goToWall(0, 0);
+    }
+
+    private void goToWall(float velocityX, float velocityY) {
         if (shouldStickToWall) {
-            int middle = width / 2;
-            float nearestXWall = getViewParams().x >= middle ? width : 0;
-            animator.start(nearestXWall, getViewParams().y);
+            updateSize();
+            animator.stop();
+            BubblesKinematics kinematics = getAnimationScheduler().getKinematics();
+            int slot = getSlot();
+            float projectedX = BubblesKinematics.projectPosition(kinematics.getX(slot), velocityX);
+            stickingToLeftSide = projectedX < movementBounds.exactCenterX();
+            kinematics.setWallMotion(slot, velocityX, velocityY,
+                    stickingToLeftSide ? movementBounds.left : movementBounds.right,
+                    movementBounds.top, movementBounds.bottom);
+            getAnimationScheduler().startSlot(slot);
+            setLayerReason(LAYER_REASON_MOTION, true);
+            wallMotionStartTime = SystemClock.uptimeMillis();
+        }
+    }
+
+    private void stopMotion() {
+        animator.stop();
+        stopSlot();
+        setLayerReason(LAYER_REASON_MOTION, false);
+    }
 
+    private void stopSlot() {
+        if (slot != BubblesKinematics.NO_SLOT) {
+            getAnimationScheduler().stopSlot(slot);
+        }
+    }
 
+    private class WallMotionListener implements BubblesPhysicsEngine.Listener {
+        @Override
+        public void onSlotMoved(int slot, float x, float y) {
+            // The engine owns the slot while it moves, only the interpolated position is rendered.
+            renderPosition(x, y);
+            commitViewParamsUpdate();
+        }
+
+        @Override
+        public void onSlotAtRest(int slot) {
+            setLayerReason(LAYER_REASON_MOTION, false);
+            if (getMetrics() != null) {
+                getMetrics().onMotionSettled(SystemClock.uptimeMillis() - wallMotionStartTime);
+            }
+            if (getCompositor() != null) {
+                getCompositor().notifyBubbleAtRest();
+            }
             if (onBubbleStickToWallListener != null) {
-                onBubbleStickToWallListener.onBubbleStickToWall(this, getViewParams().x < middle);
+                onBubbleStickToWallListener.onBubbleStickToWall(BubbleLayout.this, stickingToLeftSide);
             }
         }
     }
@@ -260,11 +742,9 @@ public class BubbleLayout extends BubbleBaseLayout {
         int oldX = (int) this.getViewParams().x;
         int oldY = (int) this.getViewParams().y;
 
-        DisplayMetrics displayMetrics = new DisplayMetrics();
-        getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
-        int height = displayMetrics.heightPixels;
-        int width = displayMetrics.widthPixels;
-        animator.start((width/2) - (getWidth()/2), (height/2) - (getHeight()/2));
+        updateMovementBounds();
+        stopSlot();
+        animator.start(movementBounds.centerX(), movementBounds.centerY());
 
 
         if (onBubbleGoToCenterListener != null) {
@@ -272,71 +752,285 @@ public class BubbleLayout extends BubbleBaseLayout {
         }
     }
 
+    /**
+     * @param endAction run once the bubble stops moving, whether it reached the center or not
+     */
+    void goToCenter(Runnable endAction) {
+        goToCenter();
+        animator.setEndAction(endAction);
+    }
+
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Grows the bubble window into a panel showing the dialog view, as an alternative to
+     * BubblesManager.addDialogView() that doesn't create another window. The dialog view is
+     * revealed from the bubble position, touching outside of it or pressing back collapses the
+     * bubble back. The window takes focus while expanded, so the dialog view can show the IME.
+     */
+    public void expand() {
+        if (expanded || dialogView == null) {
+            return;
+        }
+        if (collapsing) {
+            dialogView.animate().cancel();
+            finishCollapse();
+        }
+        expanded = true;
+        stopMotion();
+        if (dialog != null) {
+            if (dialog.isShowing()) {
+                dialog.dismiss();
+            }
+            setDialog(null, null);
+        }
+
+        collapsedX = getViewParams().x;
+        collapsedY = getViewParams().y;
+        BubblesDisplayGeometry geometry = getDisplayGeometry();
+        float fromX = collapsedX + getWidth() / 2f - geometry.getScreenWidth() / 2f;
+        float fromY = collapsedY + getHeight() / 2f - geometry.getScreenHeight() / 2f;
+
+        collapsedChildrenVisibility.clear();
+        for (int i = 0; i < getChildCount(); i++) {
+            collapsedChildrenVisibility.put(i, getChildAt(i).getVisibility());
+            getChildAt(i).setVisibility(View.INVISIBLE);
+        }
+        if (dialogView.getParent() != null) {
+            ((ViewGroup) dialogView.getParent()).removeView(dialogView);
+        }
+        addView(dialogView, new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT,
+                Gravity.CENTER));
+        setMinimumWidth(geometry.getScreenWidth());
+        setMinimumHeight(geometry.getScreenHeight());
+        getViewParams().x = 0;
+        getViewParams().y = 0;
+        setWindowFocusable(true);
+        requestViewParamsUpdate();
+
+        dialogView.setScaleX(0);
+        dialogView.setScaleY(0);
+        dialogView.setAlpha(0);
+        dialogView.setTranslationX(fromX);
+        dialogView.setTranslationY(fromY);
+        dialogView.animate()
+                .scaleX(1)
+                .scaleY(1)
+                .alpha(1)
+                .translationX(0)
+                .translationY(0)
+                .setDuration(EXPAND_ANIMATION_DURATION)
+                .setInterpolator(new DecelerateInterpolator())
+                .withLayer()
+                .start();
+
+        if (getMetrics() != null) {
+            getMetrics().onDialogShown();
+        }
+        if (onBubbleExpandListener != null) {
+            onBubbleExpandListener.onBubbleExpanded(this);
+        }
+    }
+
+    /**
+     * Reverses expand(), shrinking the dialog view back into the bubble.
+     */
+    public void collapse() {
+        if (!expanded) {
+            return;
+        }
+        expanded = false;
+        collapsing = true;
+        setWindowFocusable(false);
+        requestViewParamsUpdate();
+        BubblesDisplayGeometry geometry = getDisplayGeometry();
+        View bubbleContent = getChildCount() > 1 ? getChildAt(0) : dialogView;
+        dialogView.animate()
+                .scaleX(0)
+                .scaleY(0)
+                .alpha(0)
+                .translationX(collapsedX + bubbleContent.getWidth() / 2f - geometry.getScreenWidth() / 2f)
+                .translationY(collapsedY + bubbleContent.getHeight() / 2f - geometry.getScreenHeight() / 2f)
+                .setDuration(EXPAND_ANIMATION_DURATION)
+                .withLayer()
+                .withEndAction(finishCollapseRunnable)
+                .start();
+    }
+
+    /**
+     * Bubble windows are not focusable, so they never take the keys or the IME from the app
+     * below. An expanded bubble is, its dialog view is used as in a dialog window.
+     */
+    private void setWindowFocusable(boolean focusable) {
+        BubbleBaseLayout window = getCompositor() != null ? getCompositor() : this;
+        WindowManager.LayoutParams params = window.getViewParams();
+        if (focusable) {
+            params.flags &= ~WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        } else {
+            params.flags |= WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        }
+        if (window != this) {
+            window.updateWindowLayout();
+        }
+    }
+
+    private void finishCollapse() {
+        if (!collapsing) {
+            return;
+        }
+        collapsing = false;
+        removeView(dialogView);
+        dialogView.setScaleX(1);
+        dialogView.setScaleY(1);
+        dialogView.setAlpha(1);
+        dialogView.setTranslationX(0);
+        dialogView.setTranslationY(0);
+        for (int i = 0; i < getChildCount(); i++) {
+            getChildAt(i).setVisibility(collapsedChildrenVisibility.get(i, View.VISIBLE));
+        }
+        setMinimumWidth(0);
+        setMinimumHeight(0);
+        getViewParams().x = collapsedX;
+        getViewParams().y = collapsedY;
+        requestViewParamsUpdate();
+
+        if (onBubbleExpandListener != null) {
+            onBubbleExpandListener.onBubbleCollapsed(this);
+        }
+    }
+
     public void goTo(int coordinateX, int coordinateY) {
+        stopSlot();
         animator.start(coordinateX, coordinateY);
     }
 
-    private void move(float deltaX, float deltaY) {
-        getViewParams().x += deltaX;
-        getViewParams().y += deltaY;
-        windowManager.updateViewLayout(this, getViewParams());
+    private void moveTo(int x, int y) {
+        writePosition(x, y);
+        commitViewParamsUpdate();
     }
 
+    private void writePosition(int x, int y) {
+        int slot = getSlot();
+        BubblesKinematics kinematics = getAnimationScheduler().getKinematics();
+        kinematics.setPosition(slot, x, y);
+        renderPosition(kinematics.getX(slot), kinematics.getY(slot));
+    }
+
+    private void renderPosition(float x, float y) {
+        getViewParams().x = Math.round(x);
+        getViewParams().y = Math.round(y);
+    }
 
-    private class MoveAnimator implements Runnable {
-        private Handler handler = new Handler(Looper.getMainLooper());
+
+    private class MoveAnimator implements BubblesAnimationScheduler.Motion {
+        private Interpolator interpolator = new DecelerateInterpolator();
+        private long durationInNanos = MOVE_ANIMATION_DURATION * 1000000L;
+        private float startX;
+        private float startY;
         private float destinationX;
         private float destinationY;
         private long startingTime;
+        private boolean running;
+        private Runnable endAction;
+
+        private void setDuration(long durationInMs) {
+            this.durationInNanos = Math.max(1, durationInMs) * 1000000L;
+        }
+
+        private void setInterpolator(Interpolator interpolator) {
+            this.interpolator = interpolator != null ? interpolator : new DecelerateInterpolator();
+        }
+
+        private void setEndAction(Runnable endAction) {
+            this.endAction = running ? endAction : null;
+            if (!running && endAction != null) {
+                endAction.run();
+            }
+        }
+
+        private void runEndAction() {
+            if (endAction != null) {
+                Runnable action = endAction;
+                endAction = null;
+                action.run();
+            }
+        }
 
         private void start(float x, float y) {
+            runEndAction();
+            this.startX = getViewParams().x;
+            this.startY = getViewParams().y;
             this.destinationX = x;
             this.destinationY = y;
-            startingTime = System.currentTimeMillis();
-            handler.post(this);
+            startingTime = System.nanoTime();
+            if (!running) {
+                running = true;
+                getAnimationScheduler().start(this);
+            }
+            setLayerReason(LAYER_REASON_MOTION, true);
         }
 
         @Override
-        public void run() {
+        public boolean onFrame(long frameTimeNanos) {
+            if (!running) {
+                return false;
+            }
             if (getRootView() != null && getRootView().getParent() != null) {
-                float progress = Math.min(1, (System.currentTimeMillis() - startingTime) / 400f);
-                float deltaX = (destinationX - getViewParams().x) * progress;
-                float deltaY = (destinationY - getViewParams().y) * progress;
-                move(deltaX, deltaY);
+                float progress = Math.max(0, Math.min(1, (frameTimeNanos - startingTime) / (float) durationInNanos));
+                float fraction = interpolator.getInterpolation(progress);
+                moveTo(Math.round(startX + (destinationX - startX) * fraction),
+                        Math.round(startY + (destinationY - startY) * fraction));
                 if (progress < 1) {
-                    handler.post(this);
+                    return true;
+                }
+                if (getMetrics() != null) {
+                    getMetrics().onMotionSettled((frameTimeNanos - startingTime) / 1000000L);
                 }
             }
+            running = false;
+            setLayerReason(LAYER_REASON_MOTION, false);
+            runEndAction();
+            return false;
         }
 
         private void stop() {
-            handler.removeCallbacks(this);
-        }
-    }
-
-    private void setTimer() {
-        if (holdingTimer != null) {
-            stopTimer();
+            if (running) {
+                running = false;
+                getAnimationScheduler().cancel(this);
+            }
+            runEndAction();
         }
-
-        startTimer();
-    }
-
-    private void stopTimer() {
-        holdingTimer.cancel();
     }
 
-    private void startTimer() {
-        holdingTimer = new CountDownTimer(HOLDING_TIME, HOLDING_TIME) {
+    private class UpdateDispatcher implements BubblesAnimationScheduler.Motion {
+        private List<Object> pendingPayloads = new ArrayList<>();
+        private List<Object> dispatchingPayloads = new ArrayList<>();
 
-            public void onTick(long millisUntilFinished) {
+        private void post(Object payload) {
+            if (!pendingPayloads.contains(payload)) {
+                pendingPayloads.add(payload);
             }
+            getAnimationScheduler().start(this);
+        }
 
-            public void onFinish() {
-                if (onHoldingBubbleListener != null) {
-                    onHoldingBubbleListener.onHoldingBubble(BubbleLayout.this);
-                }
+        private void clear() {
+            pendingPayloads.clear();
+            getAnimationScheduler().cancel(this);
+        }
+
+        @Override
+        public boolean onFrame(long frameTimeNanos) {
+            // Payloads posted from the listener go to the next frame.
+            List<Object> payloads = pendingPayloads;
+            pendingPayloads = dispatchingPayloads;
+            dispatchingPayloads = payloads;
+            if (onBubbleUpdateListener != null) {
+                onBubbleUpdateListener.onBubbleUpdate(BubbleLayout.this, payloads);
             }
-        }.start();
+            payloads.clear();
+            return !pendingPayloads.isEmpty();
+        }
     }
 }
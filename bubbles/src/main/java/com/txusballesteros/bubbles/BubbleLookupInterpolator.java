@@ -0,0 +1,83 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.animation.TimeInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * Samples another interpolator once into a table of evenly spaced values and answers with a
+ * linear interpolation between the two nearest samples, so curves that are expensive to evaluate
+ * cost the same as a linear one on every frame.
+ */
+public class BubbleLookupInterpolator implements Interpolator {
+    public static final int DEFAULT_SAMPLES = 256;
+    private final float[] values;
+    private final int lastIndex;
+    private final float maxError;
+
+    public BubbleLookupInterpolator(TimeInterpolator source) {
+        this(source, DEFAULT_SAMPLES);
+    }
+
+    public BubbleLookupInterpolator(TimeInterpolator source, int samples) {
+        if (samples < 2) {
+            throw new IllegalArgumentException("At least 2 samples are needed, got " + samples);
+        }
+        values = new float[samples];
+        lastIndex = samples - 1;
+        for (int i = 0; i < samples; i++) {
+            values[i] = source.getInterpolation(i / (float) lastIndex);
+        }
+        float error = 0;
+        for (int i = 0; i < lastIndex; i++) {
+            float middle = source.getInterpolation((i + 0.5f) / lastIndex);
+            error = Math.max(error, Math.abs(middle - ((values[i] + values[i + 1]) / 2)));
+        }
+        maxError = error;
+    }
+
+    @Override
+    public float getInterpolation(float input) {
+        if (input <= 0) {
+            return values[0];
+        }
+        if (input >= 1) {
+            return values[lastIndex];
+        }
+        float position = input * lastIndex;
+        int index = (int) position;
+        float fraction = position - index;
+        return values[index] + ((values[index + 1] - values[index]) * fraction);
+    }
+
+    /**
+     * @return the largest difference with the source curve, measured halfway between samples
+     * where the linear interpolation drifts the most
+     */
+    public float getMaxError() {
+        return maxError;
+    }
+}
@@ -24,8 +24,6 @@
  */
 package com.txusballesteros.bubbles;
 
-import android.animation.AnimatorInflater;
-import android.animation.AnimatorSet;
 import android.content.Context;
 import android.os.Vibrator;
 import android.util.AttributeSet;
@@ -38,6 +36,8 @@ class BubbleTrashLayout extends BubbleBaseLayout {
 
     private int shownAnimatorResourceId = R.animator.bubble_trash_shown_animator;
     private int hideAnimatorResourceId = R.animator.bubble_trash_hide_animator;
+    private int screenWidth;
+    private int screenHeight;
 
 
     public BubbleTrashLayout(Context context) {
@@ -64,6 +64,55 @@ class BubbleTrashLayout extends BubbleBaseLayout {
         attachedToWindow = false;
     }
 
+    /**
+     * Lays out the trash content against the whole screen with the window covering it, so the
+     * drop targets bounds can be known before the window is sized and attached.
+     */
+    void layoutForScreen(int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        setWindowBounds(0, 0, screenWidth, screenHeight);
+        measure(MeasureSpec.makeMeasureSpec(screenWidth, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(screenHeight, MeasureSpec.EXACTLY));
+        layout(0, 0, screenWidth, screenHeight);
+    }
+
+    void setWindowBounds(int x, int y, int width, int height) {
+        getViewParams().x = x;
+        getViewParams().y = y;
+        getViewParams().width = width;
+        getViewParams().height = height;
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (screenWidth == 0 || screenHeight == 0) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        super.onMeasure(MeasureSpec.makeMeasureSpec(screenWidth, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(screenHeight, MeasureSpec.EXACTLY));
+        setMeasuredDimension(getViewParams().width, getViewParams().height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        if (screenWidth == 0 || screenHeight == 0) {
+            super.onLayout(changed, left, top, right, bottom);
+        } else {
+            // Children are placed as in a full screen window, then moved into this smaller one.
+            super.onLayout(changed, 0, 0, screenWidth, screenHeight);
+            for (int i = 0; i < getChildCount(); i++) {
+                getChildAt(i).offsetLeftAndRight(-getViewParams().x);
+                getChildAt(i).offsetTopAndBottom(-getViewParams().y);
+            }
+        }
+        if (getLayoutCoordinator() != null) {
+            getLayoutCoordinator().notifyDropTargetsLayoutChanged();
+        }
+    }
+
     @Override
     public void setVisibility(int visibility) {
         if (attachedToWindow) {
@@ -111,10 +160,7 @@ class BubbleTrashLayout extends BubbleBaseLayout {
 
     private void playAnimation(int animationResourceId) {
         if (!isInEditMode()) {
-            AnimatorSet animator = (AnimatorSet) AnimatorInflater
-                    .loadAnimator(getContext(), animationResourceId);
-            animator.setTarget(getChildAt(0));
-            animator.start();
+            playAnimator(animationResourceId, getChildAt(0));
         }
     }
 }
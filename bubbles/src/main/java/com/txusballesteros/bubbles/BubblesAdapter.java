@@ -0,0 +1,62 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import java.util.List;
+
+/**
+ * Keeps the bubbles on screen in sync with a list of items submitted with
+ * BubblesManager.submitItems(). Items are matched by stable id, so bubbles of items that are
+ * still in the list are kept, and only the ones whose content changed are bound again.
+ *
+ * getItemId() and areContentsTheSame() are called from a background thread, all the other
+ * methods from the main thread.
+ */
+public abstract class BubblesAdapter implements BubbleBinder {
+    public abstract long getItemId(Object item);
+
+    public boolean areContentsTheSame(Object oldItem, Object newItem) {
+        return oldItem.equals(newItem);
+    }
+
+    /**
+     * Called when the item of a bubble on screen changed its position in the list.
+     */
+    public void onBubbleMoved(BubbleLayout bubble, Object item, int position) { }
+
+    @Override
+    public void onUnbindBubble(BubbleLayout bubble) { }
+
+    @Override
+    public void onBubbleUpdate(BubbleLayout bubble, List<Object> payloads) { }
+
+    public int getInitialX(Object item, int position) {
+        return 0;
+    }
+
+    public int getInitialY(Object item, int position) {
+        return 0;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frame loop shared by all the bubbles of a service. Active motions and the physics
+ * engine are advanced from one frame callback with the same frame time, and the
+ * callback is only registered while something is moving.
+ */
+final class BubblesAnimationScheduler implements Choreographer.FrameCallback {
+    private final List<Motion> motions = new ArrayList<>();
+    private final List<Motion> frameMotions = new ArrayList<>();
+    private final BubblesPhysicsEngine physicsEngine = new BubblesPhysicsEngine();
+    private Choreographer choreographer;
+    private boolean frameScheduled = false;
+    private Motion dispatchingMotion;
+    private boolean dispatchingMotionRestarted = false;
+
+    interface Motion {
+        /**
+         * @return true while the motion needs more frames
+         */
+        boolean onFrame(long frameTimeNanos);
+    }
+
+    void start(Motion motion) {
+        if (motion == dispatchingMotion) {
+            dispatchingMotionRestarted = true;
+        }
+        if (!motions.contains(motion)) {
+            motions.add(motion);
+        }
+        scheduleFrame();
+    }
+
+    void cancel(Motion motion) {
+        motions.remove(motion);
+    }
+
+    BubblesKinematics getKinematics() {
+        return physicsEngine.getKinematics();
+    }
+
+    int allocateSlot(BubblesPhysicsEngine.Listener listener) {
+        return physicsEngine.allocate(listener);
+    }
+
+    void releaseSlot(int slot) {
+        physicsEngine.release(slot);
+    }
+
+    void startSlot(int slot) {
+        physicsEngine.start(slot);
+        scheduleFrame();
+    }
+
+    void stopSlot(int slot) {
+        physicsEngine.stop(slot);
+    }
+
+    boolean isIdle() {
+        return motions.isEmpty() && physicsEngine.isIdle();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        for (int i = 0; i < motions.size(); i++) {
+            frameMotions.add(motions.get(i));
+        }
+        for (int i = 0; i < frameMotions.size(); i++) {
+            Motion motion = frameMotions.get(i);
+            dispatchingMotion = motion;
+            dispatchingMotionRestarted = false;
+            boolean running = motion.onFrame(frameTimeNanos);
+            dispatchingMotion = null;
+            // A motion ending its frame may start itself again from its end action.
+            if (!running && !dispatchingMotionRestarted) {
+                motions.remove(motion);
+            }
+        }
+        frameMotions.clear();
+        if (!physicsEngine.isIdle()) {
+            physicsEngine.advance(frameTimeNanos);
+        }
+        if (!isIdle()) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            getChoreographer().postFrameCallback(this);
+        }
+    }
+
+    private Choreographer getChoreographer() {
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        return choreographer;
+    }
+}
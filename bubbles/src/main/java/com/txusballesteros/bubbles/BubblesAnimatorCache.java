@@ -0,0 +1,100 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.animation.Animator;
+import android.animation.AnimatorInflater;
+import android.animation.AnimatorSet;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.util.SparseArray;
+
+/**
+ * Inflates every animator resource once and hands out clones of it, so views
+ * can keep their own instance instead of parsing the XML on each touch. The
+ * interpolators of the prototypes are baked into lookup tables, which the clones
+ * share.
+ */
+final class BubblesAnimatorCache {
+    private static BubblesAnimatorCache INSTANCE;
+    private final SparseArray<Animator> prototypes = new SparseArray<>();
+    private long inflations = 0;
+
+    static BubblesAnimatorCache getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new BubblesAnimatorCache();
+        }
+        return INSTANCE;
+    }
+
+    private BubblesAnimatorCache() { }
+
+    void preloadDefaults(Context context) {
+        preload(context, R.animator.bubble_shown_animator);
+        preload(context, R.animator.bubble_down_click_animator);
+        preload(context, R.animator.bubble_up_click_animator);
+        preload(context, R.animator.bubble_trash_shown_animator);
+        preload(context, R.animator.bubble_trash_hide_animator);
+        preload(context, R.animator.bubble_trash_shown_magnetism_animator);
+        preload(context, R.animator.bubble_trash_hide_magnetism_animator);
+    }
+
+    void preload(Context context, int animatorResourceId) {
+        getPrototype(context, animatorResourceId);
+    }
+
+    long getInflations() {
+        return inflations;
+    }
+
+    Animator obtain(Context context, int animatorResourceId) {
+        return getPrototype(context, animatorResourceId).clone();
+    }
+
+    private Animator getPrototype(Context context, int animatorResourceId) {
+        Animator prototype = prototypes.get(animatorResourceId);
+        if (prototype == null) {
+            prototype = AnimatorInflater.loadAnimator(context.getApplicationContext(), animatorResourceId);
+            bakeInterpolators(prototype);
+            inflations++;
+            prototypes.put(animatorResourceId, prototype);
+        }
+        return prototype;
+    }
+
+    private void bakeInterpolators(Animator animator) {
+        if (animator instanceof AnimatorSet) {
+            for (Animator child : ((AnimatorSet) animator).getChildAnimations()) {
+                bakeInterpolators(child);
+            }
+        } else if (animator instanceof ValueAnimator) {
+            TimeInterpolator interpolator = ((ValueAnimator) animator).getInterpolator();
+            if (interpolator != null && !(interpolator instanceof BubbleLookupInterpolator)) {
+                animator.setInterpolator(new BubbleLookupInterpolator(interpolator));
+            }
+        }
+    }
+}
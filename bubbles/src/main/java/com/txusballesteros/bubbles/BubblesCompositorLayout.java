@@ -0,0 +1,272 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+/**
+ * Single overlay window hosting every bubble when the compositor mode is enabled. Bubbles
+ * keep their screen position in their view params and are placed with translations, so
+ * moving them doesn't relayout any window.
+ *
+ * While a bubble is dragged the window covers the whole screen. While bubbles settle it covers
+ * bands across the screen around them, as they move towards the walls. Once they are at rest
+ * it shrinks to the bounding box of the bubbles, which is the area that stops receiving touches
+ * for other apps, and the service splits bubbles far from each other into windows of their own.
+ */
+class BubblesCompositorLayout extends BubbleBaseLayout {
+    private static final int COLLAPSE_DELAY_IN_MS = 300;
+    private final Rect motionBounds = new Rect();
+    private boolean expanded = false;
+    private OnCompositorCollapseListener onCompositorCollapseListener;
+    private BubblesDisplayGeometry displayGeometry;
+
+    private final Runnable collapseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isAnyBubbleTouched()) {
+                postDelayed(this, COLLAPSE_DELAY_IN_MS);
+            } else {
+                collapse();
+            }
+        }
+    };
+
+    public BubblesCompositorLayout(Context context) {
+        super(context);
+        setClipChildren(false);
+        setClipToPadding(false);
+    }
+
+    void addBubble(BubbleLayout bubble) {
+        bubble.setCompositor(this);
+        addView(bubble, new FrameLayout.LayoutParams(LayoutParams.WRAP_CONTENT,
+                LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.START));
+        placeBubble(bubble);
+        scheduleCollapse();
+    }
+
+    void removeBubble(BubbleLayout bubble) {
+        removeView(bubble);
+        bubble.setCompositor(null);
+        scheduleCollapse();
+    }
+
+    void setOnCompositorCollapseListener(OnCompositorCollapseListener listener) {
+        this.onCompositorCollapseListener = listener;
+    }
+
+    void setDisplayGeometry(BubblesDisplayGeometry displayGeometry) {
+        this.displayGeometry = displayGeometry;
+    }
+
+    void notifyBubblePositionChanged(BubbleBaseLayout bubble) {
+        if (isAnyBubbleTouched()) {
+            expand();
+        } else {
+            extend(bubble);
+        }
+        placeBubble(bubble);
+        scheduleCollapse();
+    }
+
+    void notifyBubbleAtRest() {
+        if (!isAnyBubbleTouched()) {
+            collapse();
+        }
+    }
+
+    /**
+     * @return true when the window only covers the bounding box of its bubbles
+     */
+    boolean isCollapsed() {
+        return !expanded && motionBounds.isEmpty();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (expanded && event.getActionMasked() == MotionEvent.ACTION_DOWN && !isAnyBubbleTouched()) {
+            collapse();
+        }
+        return false;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // The window is sized after the bubbles, so they're measured against the screen instead.
+        BubblesDisplayGeometry geometry = getDisplayGeometry();
+        int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(geometry.getScreenWidth(), MeasureSpec.AT_MOST);
+        int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(geometry.getScreenHeight(), MeasureSpec.AT_MOST);
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                measureChild(child, childWidthMeasureSpec, childHeightMeasureSpec);
+            }
+        }
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        if (!expanded) {
+            updateCollapsedBounds();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(collapseRunnable);
+        expanded = false;
+        motionBounds.setEmpty();
+    }
+
+    private void expand() {
+        if (!expanded) {
+            expanded = true;
+            WindowManager.LayoutParams params = getViewParams();
+            params.x = 0;
+            params.y = 0;
+            params.width = WindowManager.LayoutParams.MATCH_PARENT;
+            params.height = WindowManager.LayoutParams.MATCH_PARENT;
+            updateWindowLayout();
+            placeBubbles();
+        }
+    }
+
+    /**
+     * Grows the window with a band across the screen around the bubble. Bubbles settle
+     * towards the walls, so the rest of the motion fits in the band without relayouts.
+     */
+    private void extend(BubbleBaseLayout bubble) {
+        WindowManager.LayoutParams params = getViewParams();
+        WindowManager.LayoutParams bubbleParams = bubble.getViewParams();
+        int height = bubble.getMeasuredHeight();
+        if (!expanded && bubbleParams.x >= params.x && bubbleParams.y >= params.y
+                && bubbleParams.x + bubble.getMeasuredWidth() <= params.x + params.width
+                && bubbleParams.y + height <= params.y + params.height) {
+            return;
+        }
+        expanded = false;
+        motionBounds.union(0, bubbleParams.y - height,
+                getDisplayGeometry().getScreenWidth(), bubbleParams.y + (2 * height));
+        updateCollapsedBounds();
+    }
+
+    private void collapse() {
+        removeCallbacks(collapseRunnable);
+        expanded = false;
+        motionBounds.setEmpty();
+        updateCollapsedBounds();
+        if (onCompositorCollapseListener != null) {
+            onCompositorCollapseListener.onCompositorCollapsed(this);
+        }
+    }
+
+    private void scheduleCollapse() {
+        removeCallbacks(collapseRunnable);
+        postDelayed(collapseRunnable, COLLAPSE_DELAY_IN_MS);
+    }
+
+    private void updateCollapsedBounds() {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < getChildCount(); i++) {
+            BubbleBaseLayout bubble = (BubbleBaseLayout) getChildAt(i);
+            WindowManager.LayoutParams bubbleParams = bubble.getViewParams();
+            left = Math.min(left, bubbleParams.x);
+            top = Math.min(top, bubbleParams.y);
+            right = Math.max(right, bubbleParams.x + bubble.getMeasuredWidth());
+            bottom = Math.max(bottom, bubbleParams.y + bubble.getMeasuredHeight());
+        }
+        if (getChildCount() == 0) {
+            left = top = 0;
+            right = bottom = 1;
+        }
+        if (!motionBounds.isEmpty()) {
+            left = Math.min(left, motionBounds.left);
+            top = Math.min(top, motionBounds.top);
+            right = Math.max(right, motionBounds.right);
+            bottom = Math.max(bottom, motionBounds.bottom);
+        }
+
+        WindowManager.LayoutParams params = getViewParams();
+        int width = Math.max(1, right - left);
+        int height = Math.max(1, bottom - top);
+        if (params.x != left || params.y != top || params.width != width || params.height != height) {
+            params.x = left;
+            params.y = top;
+            params.width = width;
+            params.height = height;
+            if (getParent() != null) {
+                updateWindowLayout();
+            }
+            placeBubbles();
+        }
+    }
+
+    private void placeBubbles() {
+        for (int i = 0; i < getChildCount(); i++) {
+            placeBubble((BubbleBaseLayout) getChildAt(i));
+        }
+    }
+
+    private void placeBubble(BubbleBaseLayout bubble) {
+        WindowManager.LayoutParams params = getViewParams();
+        bubble.setTranslationX(bubble.getViewParams().x - params.x);
+        bubble.setTranslationY(bubble.getViewParams().y - params.y);
+    }
+
+    private BubblesDisplayGeometry getDisplayGeometry() {
+        if (displayGeometry == null) {
+            displayGeometry = new BubblesDisplayGeometry(getContext());
+        }
+        return displayGeometry;
+    }
+
+    private boolean isAnyBubbleTouched() {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child instanceof BubbleLayout && ((BubbleLayout) child).isBeingTouched()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    interface OnCompositorCollapseListener {
+        void onCompositorCollapsed(BubblesCompositorLayout compositor);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between two lists of adapter items. Items with the same id that aren't moved
+ * are the longest run keeping their relative order, so the number of moves is minimal.
+ */
+final class BubblesDiff {
+    static final int INSERTED = 1;
+    static final int CHANGED = 1 << 1;
+    static final int MOVED = 1 << 2;
+    static final int DUPLICATED = 1 << 3;
+
+    final List<Object> items;
+    final long[] ids;
+    final int[] flags;
+    final long[] removedIds;
+
+    private BubblesDiff(List<Object> items, long[] ids, int[] flags, long[] removedIds) {
+        this.items = items;
+        this.ids = ids;
+        this.flags = flags;
+        this.removedIds = removedIds;
+    }
+
+    static BubblesDiff calculate(BubblesAdapter adapter, List<Object> oldItems, List<Object> newItems) {
+        Map<Long, Integer> oldPositions = new HashMap<>(oldItems.size() * 2);
+        for (int i = 0; i < oldItems.size(); i++) {
+            oldPositions.put(adapter.getItemId(oldItems.get(i)), i);
+        }
+
+        int size = newItems.size();
+        long[] ids = new long[size];
+        int[] flags = new int[size];
+        int[] keptNewPositions = new int[size];
+        int[] keptOldPositions = new int[size];
+        int keptCount = 0;
+        Map<Long, Boolean> seenIds = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Object item = newItems.get(i);
+            long id = adapter.getItemId(item);
+            ids[i] = id;
+            if (seenIds.put(id, Boolean.TRUE) != null) {
+                flags[i] = DUPLICATED;
+                continue;
+            }
+            Integer oldPosition = oldPositions.remove(id);
+            if (oldPosition == null) {
+                flags[i] = INSERTED;
+            } else {
+                if (!adapter.areContentsTheSame(oldItems.get(oldPosition), item)) {
+                    flags[i] = CHANGED;
+                }
+                keptNewPositions[keptCount] = i;
+                keptOldPositions[keptCount] = oldPosition;
+                keptCount++;
+            }
+        }
+
+        boolean[] inOrder = longestIncreasingRun(keptOldPositions, keptCount);
+        for (int i = 0; i < keptCount; i++) {
+            if (!inOrder[i]) {
+                flags[keptNewPositions[i]] |= MOVED;
+            }
+        }
+
+        long[] removedIds = new long[oldPositions.size()];
+        int removedCount = 0;
+        for (Long id : oldPositions.keySet()) {
+            removedIds[removedCount++] = id;
+        }
+        return new BubblesDiff(newItems, ids, flags, removedIds);
+    }
+
+    /**
+     * @return which values belong to the longest strictly increasing subsequence
+     */
+    private static boolean[] longestIncreasingRun(int[] values, int count) {
+        boolean[] result = new boolean[count];
+        if (count == 0) {
+            return result;
+        }
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        for (int i = tails[length - 1]; i >= 0; i = previous[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.view.Display;
+import android.view.WindowManager;
+
+/**
+ * Display size, insets and density of the default display, queried once and refreshed
+ * only when the display or the configuration changes.
+ */
+final class BubblesDisplayGeometry implements DisplayManager.DisplayListener {
+    private final Context context;
+    private final WindowManager windowManager;
+    private final DisplayMetrics metrics = new DisplayMetrics();
+    private final Point size = new Point();
+    private final Rect usableBounds = new Rect();
+    private int statusBarHeight;
+    private float frameIntervalInMs;
+    private boolean listening = false;
+    private OnDisplayGeometryChangeListener onDisplayGeometryChangeListener;
+
+    BubblesDisplayGeometry(Context context) {
+        this.context = context;
+        this.windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        refresh();
+    }
+
+    void setOnDisplayGeometryChangeListener(OnDisplayGeometryChangeListener listener) {
+        this.onDisplayGeometryChangeListener = listener;
+    }
+
+    void startListening() {
+        if (!listening && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+            displayManager.registerDisplayListener(this, null);
+            listening = true;
+        }
+    }
+
+    void stopListening() {
+        if (listening) {
+            DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+            displayManager.unregisterDisplayListener(this);
+            listening = false;
+        }
+    }
+
+    void refresh() {
+        Display display = windowManager.getDefaultDisplay();
+        display.getMetrics(metrics);
+        display.getSize(size);
+        float refreshRate = display.getRefreshRate();
+        frameIntervalInMs = 1000f / (refreshRate > 0 ? refreshRate : 60);
+        int statusBarResourceId = context.getResources()
+                .getIdentifier("status_bar_height", "dimen", "android");
+        statusBarHeight = statusBarResourceId > 0
+                ? context.getResources().getDimensionPixelSize(statusBarResourceId) : 0;
+        usableBounds.set(0, statusBarHeight, size.x, size.y);
+    }
+
+    int getScreenWidth() {
+        return size.x;
+    }
+
+    int getScreenHeight() {
+        return size.y;
+    }
+
+    float getDensity() {
+        return metrics.density;
+    }
+
+    float getFrameInterval() {
+        return frameIntervalInMs;
+    }
+
+    int getInsetTop() {
+        return statusBarHeight;
+    }
+
+    Rect getUsableBounds() {
+        return usableBounds;
+    }
+
+    @Override
+    public void onDisplayAdded(int displayId) { }
+
+    @Override
+    public void onDisplayRemoved(int displayId) { }
+
+    @Override
+    public void onDisplayChanged(int displayId) {
+        if (displayId == Display.DEFAULT_DISPLAY) {
+            refresh();
+            if (onDisplayGeometryChangeListener != null) {
+                onDisplayGeometryChangeListener.onDisplayGeometryChanged();
+            }
+        }
+    }
+
+    interface OnDisplayGeometryChangeListener {
+        void onDisplayGeometryChanged();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+/**
+ * Runs the window and dialog work of the BubblesService on the UI thread. A custom
+ * implementation can be given to BubblesManager.Builder, for instance one that runs
+ * tasks manually to drive the service deterministically.
+ */
+public interface BubblesExecutor {
+    /**
+     * Runs the task on the UI thread, right away if the caller is already on it.
+     */
+    void execute(Runnable task);
+
+    void executeDelayed(Runnable task, long delayInMs);
+
+    /**
+     * Removes any pending execution of the task, the task itself is the cancellation token.
+     */
+    void cancel(Runnable task);
+}
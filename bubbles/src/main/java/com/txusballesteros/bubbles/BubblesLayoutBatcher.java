@@ -0,0 +1,89 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the window position writes made to bubbles during a frame and
+ * pushes only the last one of every window to the WindowManager at vsync.
+ */
+final class BubblesLayoutBatcher implements Choreographer.FrameCallback {
+    private final List<BubbleBaseLayout> pendingViews = new ArrayList<>();
+    private Choreographer choreographer;
+    private boolean frameScheduled = false;
+
+    void scheduleLayoutUpdate(BubbleBaseLayout view) {
+        if (!view.isLayoutUpdatePending()) {
+            view.setLayoutUpdatePending(true);
+            pendingViews.add(view);
+        }
+        if (!frameScheduled) {
+            frameScheduled = true;
+            getChoreographer().postFrameCallback(this);
+        }
+    }
+
+    void commitLayoutUpdate(BubbleBaseLayout view) {
+        commit(view);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        for (int i = 0; i < pendingViews.size(); i++) {
+            BubbleBaseLayout view = pendingViews.get(i);
+            view.setLayoutUpdatePending(false);
+            commit(view);
+        }
+        pendingViews.clear();
+    }
+
+    private void commit(BubbleBaseLayout view) {
+        WindowManager.LayoutParams params = view.getViewParams();
+        if (params == null || view.getParent() == null) {
+            return;
+        }
+        if (view.getCompositor() != null) {
+            view.getCompositor().notifyBubblePositionChanged(view);
+            return;
+        }
+        if (!view.isViewParamsCommitted(params.x, params.y)) {
+            view.updateWindowLayout();
+            view.markViewParamsCommitted();
+        }
+    }
+
+    private Choreographer getChoreographer() {
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        return choreographer;
+    }
+}
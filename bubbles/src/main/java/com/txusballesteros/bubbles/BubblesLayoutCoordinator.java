@@ -24,14 +24,23 @@
  */
 package com.txusballesteros.bubbles;
 
+import android.graphics.Rect;
 import android.view.View;
+import android.view.ViewParent;
 import android.view.WindowManager;
 
+import java.util.ArrayList;
+import java.util.List;
+
 final class BubblesLayoutCoordinator {
     private static BubblesLayoutCoordinator INSTANCE;
     private BubbleTrashLayout trashView;
     private WindowManager windowManager;
     private BubblesService bubblesService;
+    private final List<DropTarget> dropTargets = new ArrayList<>();
+    private final List<DropTarget> indexedTargets = new ArrayList<>();
+    private final BubbleDropTargetIndex dropTargetIndex = new BubbleDropTargetIndex();
+    private DropTarget currentTarget;
 
     private static BubblesLayoutCoordinator getInstance() {
         if (INSTANCE == null) {
@@ -42,61 +51,153 @@ final class BubblesLayoutCoordinator {
 
     private BubblesLayoutCoordinator() { }
 
+    void addDropTarget(int viewId, BubblesService.OnBubbleDropTargetListener listener) {
+        if (trashView != null) {
+            View view = trashView.findViewById(viewId);
+            if (view != null) {
+                dropTargets.add(new DropTarget(view, listener));
+                trashView.requestLayout();
+            }
+        }
+    }
+
+    /**
+     * Called by the trash window after every layout pass, so drop target bounds are only
+     * computed when they may have changed.
+     */
+    void notifyDropTargetsLayoutChanged() {
+        dropTargetIndex.clear();
+        indexedTargets.clear();
+        View trashContentView = getTrashContent();
+        if (trashContentView != null) {
+            indexDropTarget(trashContentView, null);
+        }
+        for (int i = 0; i < dropTargets.size(); i++) {
+            DropTarget target = dropTargets.get(i);
+            if (target.view != trashContentView) {
+                indexDropTarget(target.view, target);
+            }
+        }
+        dropTargetIndex.build();
+    }
+
+    private void indexDropTarget(View view, DropTarget target) {
+        if (view.getVisibility() == View.GONE || indexedTargets.size() == BubbleDropTargetIndex.MAX_TARGETS) {
+            return;
+        }
+        int left = trashView.getViewParams().x + view.getLeft();
+        int top = trashView.getViewParams().y + view.getTop();
+        ViewParent parent = view.getParent();
+        while (parent instanceof View && parent != trashView) {
+            left += ((View) parent).getLeft();
+            top += ((View) parent).getTop();
+            parent = parent.getParent();
+        }
+        int width = view.getMeasuredWidth();
+        int height = view.getMeasuredHeight();
+        dropTargetIndex.add(left - (width / 2), top - (height / 2),
+                left + width + (width / 2), top + height + (height / 2));
+        indexedTargets.add(target);
+    }
+
+    /**
+     * Screen bounds covering the magnet area of every drop target, as of the last layout pass.
+     * @return false if there is no drop target
+     */
+    boolean getDropTargetsBounds(Rect outBounds) {
+        if (dropTargetIndex.size() == 0) {
+            return false;
+        }
+        outBounds.set(dropTargetIndex.getLeft(), dropTargetIndex.getTop(),
+                dropTargetIndex.getRight(), dropTargetIndex.getBottom());
+        return true;
+    }
+
+    public void notifyBubbleTouched(BubbleLayout bubble) {
+        if (trashView != null) {
+            bubblesService.prewarmTrash();
+        }
+    }
+
     public void notifyBubblePositionChanged(BubbleLayout bubble, int x, int y) {
         if (trashView != null) {
+            bubblesService.prewarmTrash();
             trashView.setVisibility(View.VISIBLE);
-            if (checkIfBubbleIsOverTrash(bubble)) {
-                trashView.applyMagnetism();
-                trashView.vibrate();
-                applyTrashMagnetismToBubble(bubble);
-            } else {
-                trashView.releaseMagnetism();
+            int targetIndex = findDropTarget(bubble);
+            DropTarget target = targetIndex != BubbleDropTargetIndex.NO_TARGET
+                    ? indexedTargets.get(targetIndex) : null;
+            if (targetIndex == BubbleDropTargetIndex.NO_TARGET || target != currentTarget) {
+                exitCurrentTarget(bubble);
+            }
+            if (targetIndex != BubbleDropTargetIndex.NO_TARGET) {
+                enterTarget(bubble, targetIndex, target);
+                applyMagnetismToBubble(bubble, targetIndex);
             }
         }
     }
 
-    private void applyTrashMagnetismToBubble(BubbleLayout bubble) {
-        View trashContentView = getTrashContent();
-        int trashCenterX = (trashContentView.getLeft() + (trashContentView.getMeasuredWidth() / 2));
-        int trashCenterY = (trashContentView.getTop() + (trashContentView.getMeasuredHeight() / 2));
-        int x = (trashCenterX - (bubble.getMeasuredWidth() / 2));
-        int y = (trashCenterY - (bubble.getMeasuredHeight() / 2));
-        bubble.getViewParams().x = x;
-        bubble.getViewParams().y = y;
-        windowManager.updateViewLayout(bubble, bubble.getViewParams());
-    }
-
-    private boolean checkIfBubbleIsOverTrash(BubbleLayout bubble) {
-        boolean result = false;
-        if (trashView.getVisibility() == View.VISIBLE) {
-            View trashContentView = getTrashContent();
-            int trashWidth = trashContentView.getMeasuredWidth();
-            int trashHeight = trashContentView.getMeasuredHeight();
-            int trashLeft = (trashContentView.getLeft() - (trashWidth / 2));
-            int trashRight = (trashContentView.getLeft() + trashWidth + (trashWidth / 2));
-            int trashTop = (trashContentView.getTop() - (trashHeight / 2));
-            int trashBottom = (trashContentView.getTop() + trashHeight + (trashHeight / 2));
-            int bubbleWidth = bubble.getMeasuredWidth();
-            int bubbleHeight = bubble.getMeasuredHeight();
-            int bubbleLeft = bubble.getViewParams().x;
-            int bubbleRight = bubbleLeft + bubbleWidth;
-            int bubbleTop = bubble.getViewParams().y;
-            int bubbleBottom = bubbleTop + bubbleHeight;
-            if (bubbleLeft >= trashLeft && bubbleRight <= trashRight) {
-                if (bubbleTop >= trashTop && bubbleBottom <= trashBottom) {
-                    result = true;
+    private void enterTarget(BubbleLayout bubble, int targetIndex, DropTarget target) {
+        if (target == null) {
+            trashView.applyMagnetism();
+            trashView.vibrate();
+        } else if (target != currentTarget) {
+            target.listener.onBubbleEnterDropTarget(bubble, target.view);
+        }
+        currentTarget = target;
+    }
+
+    private void exitCurrentTarget(BubbleLayout bubble) {
+        if (currentTarget == null) {
+            trashView.releaseMagnetism();
+        } else {
+            currentTarget.listener.onBubbleExitDropTarget(bubble, currentTarget.view);
+        }
+        currentTarget = null;
+    }
+
+    private void applyMagnetismToBubble(BubbleLayout bubble, int targetIndex) {
+        int x = dropTargetIndex.getCenterX(targetIndex) - (bubble.getMeasuredWidth() / 2);
+        int y = dropTargetIndex.getCenterY(targetIndex) - (bubble.getMeasuredHeight() / 2);
+        bubble.setPosition(x, y);
+    }
+
+    private int findDropTarget(BubbleLayout bubble) {
+        if (trashView.getVisibility() != View.VISIBLE) {
+            return BubbleDropTargetIndex.NO_TARGET;
+        }
+        return bubble.findDropTarget(dropTargetIndex);
+    }
+
+    public void notifyBubbleRelease(BubbleLayout bubble) {
+        if (trashView != null) {
+            int targetIndex = findDropTarget(bubble);
+            if (targetIndex != BubbleDropTargetIndex.NO_TARGET) {
+                DropTarget target = indexedTargets.get(targetIndex);
+                if (target == null) {
+                    bubblesService.removeBubble(bubble);
+                } else {
+                    target.listener.onBubbleDroppedOnTarget(bubble, target.view);
                 }
+            } else if (currentTarget != null) {
+                exitCurrentTarget(bubble);
             }
+            currentTarget = null;
+            trashView.setVisibility(View.GONE);
+            bubblesService.scheduleTrashRelease();
         }
-        return result;
     }
 
-    public void notifyBubbleRelease(BubbleLayout bubble) {
+    /**
+     * The gesture was taken away from the bubble, so wherever it is, it isn't a drop.
+     */
+    public void notifyBubbleCancel(BubbleLayout bubble) {
         if (trashView != null) {
-            if (checkIfBubbleIsOverTrash(bubble)) {
-                bubblesService.removeBubble(bubble);
+            if (currentTarget != null || findDropTarget(bubble) != BubbleDropTargetIndex.NO_TARGET) {
+                exitCurrentTarget(bubble);
             }
+            currentTarget = null;
             trashView.setVisibility(View.GONE);
+            bubblesService.scheduleTrashRelease();
         }
     }
 
@@ -106,6 +207,8 @@ final class BubblesLayoutCoordinator {
         public Builder(BubblesService service) {
             layoutCoordinator = getInstance();
             layoutCoordinator.bubblesService = service;
+            layoutCoordinator.dropTargets.clear();
+            layoutCoordinator.currentTarget = null;
         }
 
         public Builder setTrashView(BubbleTrashLayout trashView) {
@@ -126,4 +229,14 @@ final class BubblesLayoutCoordinator {
     private View getTrashContent() {
         return trashView.getChildAt(0);
     }
+
+    private static final class DropTarget {
+        private final View view;
+        private final BubblesService.OnBubbleDropTargetListener listener;
+
+        private DropTarget(View view, BubblesService.OnBubbleDropTargetListener listener) {
+            this.view = view;
+            this.listener = listener;
+        }
+    }
 }
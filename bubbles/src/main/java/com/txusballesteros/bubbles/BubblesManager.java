@@ -31,8 +31,12 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.os.IBinder;
+import android.util.SparseArray;
 import android.view.View;
 
+import java.util.Collection;
+import java.util.List;
+
 public class BubblesManager {
     private static BubblesManager INSTANCE;
     private Context context;
@@ -45,6 +49,18 @@ public class BubblesManager {
     private boolean allowRedundancies = true;
     private BubblesService.RedundancyAnimationListener redundancyAnimationListener;
     private BubblesService.OnShowingDialogViewAnimationListener onShowDialogViewAnimationListener;
+    private SparseArray<BubblesService.OnBubbleDropTargetListener> dropTargetListeners = new SparseArray<>();
+    private BubblesExecutor executor;
+    private boolean compositorMode = false;
+    private long trashIdleTimeout;
+    private int renderPolicy = BubbleLayout.RENDER_POLICY_NONE;
+    private BubbleBinder bubbleBinder;
+    private BubblesAdapter adapter;
+    private int bubblesPoolSize = 0;
+    private boolean parkRecycledWindows = false;
+    private boolean prewarmDialogs = false;
+    private boolean touchPrediction = false;
+    private BubblesMetrics metrics;
 
 
     private static BubblesManager getInstance(Context context) {
@@ -77,11 +93,24 @@ public class BubblesManager {
     }
 
     private void configureBubblesService() {
+        bubblesService.setExecutor(executor);
+        bubblesService.setMetrics(metrics);
+        bubblesService.setCompositorMode(compositorMode);
+        bubblesService.setRenderPolicy(renderPolicy);
+        bubblesService.setBubbleBinder(bubbleBinder);
+        bubblesService.setAdapter(adapter);
+        bubblesService.setPrewarmDialogs(prewarmDialogs);
+        bubblesService.setTouchPrediction(touchPrediction);
+        bubblesService.setBubblesPool(bubblesPoolSize, parkRecycledWindows);
+        bubblesService.setTrashIdleTimeout(trashIdleTimeout);
         bubblesService.addTrash(trashLayoutResourceId);
         bubblesService.addTrashAnimations(shownAnimatorResourceId, hideAnimatorResourceId);
         bubblesService.setAllowRedundancies(allowRedundancies);
         bubblesService.setRedundancyAnimationListener(redundancyAnimationListener);
         bubblesService.setViewAnimationListener(onShowDialogViewAnimationListener);
+        for (int i = 0; i < dropTargetListeners.size(); i++) {
+            bubblesService.addDropTarget(dropTargetListeners.keyAt(i), dropTargetListeners.valueAt(i));
+        }
     }
 
     public void initialize() {
@@ -104,12 +133,69 @@ public class BubblesManager {
         }
     }
 
+    /**
+     * Adds a bubble for the item, reusing one of the removed bubbles if there is any, and binds
+     * it with the BubbleBinder set on the Builder.
+     * @return the bubble bound to the item, or null if it was rejected as redundant
+     */
+    public BubbleLayout addBubble(Object item, int x, int y) {
+        if (!bounded || bubbleBinder == null) {
+            return null;
+        }
+        BubbleLayout bubble = bubblesService.obtainBubble();
+        bubbleBinder.onBindBubble(bubble, item);
+        if (!bubblesService.tryAddBubble(bubble, x, y)) {
+            bubblesService.releaseBubble(bubble);
+            return null;
+        }
+        return bubble;
+    }
+
+    /**
+     * Updates the bubbles on screen to match the items, see BubblesAdapter. The list is copied,
+     * changes made to it afterwards require a new call.
+     */
+    public void submitItems(List<?> items) {
+        if (bounded) {
+            bubblesService.submitItems(items);
+        }
+    }
+
     public void removeBubble(BubbleLayout bubble) {
         if (bounded) {
             bubblesService.removeBubble(bubble);
         }
     }
 
+    public void removeBubbles(Collection<BubbleLayout> bubbles) {
+        if (bounded) {
+            bubblesService.removeBubbles(bubbles);
+        }
+    }
+
+    /**
+     * Groups the following addBubble and removeBubble calls, their windows are added and removed
+     * together on commitBatch() and entry animations are staggered within the same frame loop.
+     */
+    public void beginBatch() {
+        if (bounded) {
+            bubblesService.beginBatch();
+        }
+    }
+
+    public void commitBatch() {
+        if (bounded) {
+            bubblesService.commitBatch();
+        }
+    }
+
+    public BubbleLayout findBubbleByTag(Object tag) {
+        if (bounded) {
+            return bubblesService.findBubbleByTag(tag);
+        }
+        return null;
+    }
+
     public void removeDialog(final BubbleLayout bubbleView, AlertDialog dialog) {
         bubblesService.removeDialog(bubbleView, dialog);
     }
@@ -140,6 +226,17 @@ public class BubblesManager {
             return this;
         }
 
+        /**
+         * The trash window is attached when a bubble is touched and detached after it has been
+         * hidden for this long.
+         * @param trashIdleTimeoutInMs idle time before detaching the trash window
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setTrashIdleTimeout(long trashIdleTimeoutInMs) {
+            bubblesManager.trashIdleTimeout = trashIdleTimeoutInMs;
+            return this;
+        }
+
         public Builder setTrashAnimations(int shownAnimatorResourceId, int hideAnimatorResourceId) {
             bubblesManager.shownAnimatorResourceId = shownAnimatorResourceId;
             bubblesManager.hideAnimatorResourceId = hideAnimatorResourceId;
@@ -167,6 +264,126 @@ public class BubblesManager {
             return this;
         }
 
+        /**
+         * Adds a drop target besides the trash. Bubbles dragged over the target are attracted to
+         * its center and the listener receives enter, exit and drop events.
+         * Targets are looked up in the trash layout, use a merge root to place several targets
+         * next to the trash, which is always the first view of that layout.
+         * @param targetViewResourceId id of the target view inside the trash layout
+         * @param listener for enter, exit and drop events of this target
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder addDropTarget(int targetViewResourceId, BubblesService.OnBubbleDropTargetListener listener) {
+            bubblesManager.dropTargetListeners.put(targetViewResourceId, listener);
+            return this;
+        }
+
+        /**
+         * Executor used by the BubblesService to run window and dialog work on the UI thread.
+         * By default a single main thread Handler is used.
+         * @param executor to run the service UI work
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setExecutor(BubblesExecutor executor) {
+            bubblesManager.executor = executor;
+            return this;
+        }
+
+        /**
+         * Renders the bubbles into shared overlay windows, moving them with in-process translations
+         * instead of window relayouts. While a bubble is dragged its window covers the screen, once
+         * bubbles are at rest every window shrinks to a cluster of bubbles close to each other, so
+         * bubbles far apart don't take the touches between them.
+         * @param compositorMode true to share overlay windows between bubbles
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setCompositorMode(boolean compositorMode) {
+            bubblesManager.compositorMode = compositorMode;
+            return this;
+        }
+
+        /**
+         * How bubbles content is rendered while dragged or animated, unless a bubble sets its own
+         * with BubbleLayout.setRenderPolicy(). Hardware layers make complex content cheap to
+         * animate at the cost of the layer memory.
+         * @param renderPolicy one of BubbleLayout.RENDER_POLICY_NONE,
+         *                     BubbleLayout.RENDER_POLICY_HARDWARE_LAYER or
+         *                     BubbleLayout.RENDER_POLICY_SNAPSHOT
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setRenderPolicy(int renderPolicy) {
+            bubblesManager.renderPolicy = renderPolicy;
+            return this;
+        }
+
+        /**
+         * Creates and binds the bubbles added with addBubble(Object, int, int).
+         * @param bubbleBinder bubbles factory and bind callbacks
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setBubbleBinder(BubbleBinder bubbleBinder) {
+            bubblesManager.bubbleBinder = bubbleBinder;
+            return this;
+        }
+
+        /**
+         * Keeps up to bubblesPoolSize removed bubbles to be bound again by the BubbleBinder
+         * instead of inflating new ones. Parked windows stay attached, invisible and not
+         * touchable, so reusing a bubble doesn't create a new window either.
+         * @param bubblesPoolSize max number of removed bubbles kept, 0 to disable the pool
+         * @param parkRecycledWindows true to keep the windows of the kept bubbles
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setBubblesPool(int bubblesPoolSize, boolean parkRecycledWindows) {
+            bubblesManager.bubblesPoolSize = bubblesPoolSize;
+            bubblesManager.parkRecycledWindows = parkRecycledWindows;
+            return this;
+        }
+
+        /**
+         * Bubbles are created, bound and removed by the adapter to match the items passed to
+         * submitItems(). The adapter is also used as BubbleBinder.
+         * @param adapter bubbles adapter
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setAdapter(BubblesAdapter adapter) {
+            bubblesManager.adapter = adapter;
+            return this;
+        }
+
+        /**
+         * Builds the dialog window of a bubble with a dialog view as soon as it is touched, so
+         * it is ready by the time the tap ends. Dialog windows are reused either way.
+         * @param prewarmDialogs true to build dialog windows on touch down
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setPrewarmDialogs(boolean prewarmDialogs) {
+            bubblesManager.prewarmDialogs = prewarmDialogs;
+            return this;
+        }
+
+        /**
+         * Places dragged bubbles where the finger is predicted to be by the next frame, from the
+         * recent touch samples, so they don't trail behind fast drags. Bubbles can override it
+         * with BubbleLayout.setTouchPrediction().
+         * @param touchPrediction true to predict the finger position
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setTouchPrediction(boolean touchPrediction) {
+            bubblesManager.touchPrediction = touchPrediction;
+            return this;
+        }
+
+        /**
+         * Collects frame timing, window operations and interaction times of the bubbles.
+         * @param metrics counters to update, read them with BubblesMetrics.getSnapshot()
+         * @return A BubblesManager.Builder data type
+         */
+        public Builder setMetrics(BubblesMetrics metrics) {
+            bubblesManager.metrics = metrics;
+            return this;
+        }
+
         public BubblesManager build() {
             return bubblesManager;
         }
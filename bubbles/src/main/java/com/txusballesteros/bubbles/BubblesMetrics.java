@@ -0,0 +1,390 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Frame timing and interaction metrics of the bubbles, registered with
+ * BubblesManager.Builder.setMetrics(). Every counter and histogram is allocated up front and
+ * updated from the main thread, so it can be kept on in production.
+ *
+ * Read them with getSnapshot(), or set a Listener to get a snapshot periodically. The per
+ * interaction costs, like window updates per drag frame or animator inflations, are meant to
+ * be checked against budgets by the app, for example in its instrumentation tests.
+ */
+public final class BubblesMetrics {
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667L;
+    private static final float JANK_FRAME_INTERVALS = 1.5f;
+
+    private final Histogram dragFrames = new Histogram();
+    private final Histogram dragJankyFrames = new Histogram();
+    private final Histogram tapToDialogTimes = new Histogram();
+    private final Histogram settleTimes = new Histogram();
+    private final Histogram dragFrameWindowUpdates = new Histogram();
+    private long totalDragFrames;
+    private long totalDragJankyFrames;
+    private long addViewCalls;
+    private long removeViewCalls;
+    private long updateViewLayoutCalls;
+    private int liveBubbles;
+    private int liveWindows;
+    private long resetAnimatorInflations;
+
+    private long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    private boolean dragging = false;
+    private long lastFrameTimeNanos;
+    private int currentDragFrames;
+    private int currentDragJankyFrames;
+    private long lastFrameUpdateViewLayoutCalls;
+    private long tapTime = -1;
+    private final Choreographer.FrameCallback dragFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onDragFrame(frameTimeNanos);
+        }
+    };
+
+    private Listener listener;
+    private long listenerPeriod;
+    private Handler handler;
+    private final Snapshot listenerSnapshot = new Snapshot();
+    private final Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (listener != null) {
+                listener.onMetrics(getSnapshot(listenerSnapshot));
+                handler.postDelayed(this, listenerPeriod);
+            }
+        }
+    };
+
+    public interface Listener {
+        /**
+         * @param snapshot reused between calls, copy what must outlive the call
+         */
+        void onMetrics(Snapshot snapshot);
+    }
+
+    /**
+     * Delivers a snapshot to the listener on the main thread every periodInMs. Pass a null
+     * listener to stop it.
+     */
+    public void setListener(Listener listener, long periodInMs) {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        handler.removeCallbacks(deliverRunnable);
+        this.listener = listener;
+        this.listenerPeriod = Math.max(1, periodInMs);
+        if (listener != null) {
+            handler.postDelayed(deliverRunnable, listenerPeriod);
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return getSnapshot(new Snapshot());
+    }
+
+    /**
+     * @param snapshot instance to fill, so reading the metrics doesn't allocate
+     * @return the same snapshot
+     */
+    public Snapshot getSnapshot(Snapshot snapshot) {
+        dragFrames.copyTo(snapshot.dragFrames);
+        dragJankyFrames.copyTo(snapshot.dragJankyFrames);
+        tapToDialogTimes.copyTo(snapshot.tapToDialogTimes);
+        settleTimes.copyTo(snapshot.settleTimes);
+        dragFrameWindowUpdates.copyTo(snapshot.dragFrameWindowUpdates);
+        snapshot.totalDragFrames = totalDragFrames;
+        snapshot.totalDragJankyFrames = totalDragJankyFrames;
+        snapshot.addViewCalls = addViewCalls;
+        snapshot.removeViewCalls = removeViewCalls;
+        snapshot.updateViewLayoutCalls = updateViewLayoutCalls;
+        snapshot.liveBubbles = liveBubbles;
+        snapshot.liveWindows = liveWindows;
+        snapshot.animatorInflations = BubblesAnimatorCache.getInstance().getInflations()
+                - resetAnimatorInflations;
+        return snapshot;
+    }
+
+    /**
+     * Clears counters and histograms. Live bubbles and windows are kept.
+     */
+    public void reset() {
+        dragFrames.clear();
+        dragJankyFrames.clear();
+        tapToDialogTimes.clear();
+        settleTimes.clear();
+        dragFrameWindowUpdates.clear();
+        totalDragFrames = 0;
+        totalDragJankyFrames = 0;
+        addViewCalls = 0;
+        removeViewCalls = 0;
+        updateViewLayoutCalls = 0;
+        lastFrameUpdateViewLayoutCalls = 0;
+        resetAnimatorInflations = BubblesAnimatorCache.getInstance().getInflations();
+    }
+
+    void setRefreshRate(float refreshRate) {
+        if (refreshRate > 0) {
+            frameIntervalNanos = (long) (1000000000L / refreshRate);
+        }
+    }
+
+    void onDragStarted() {
+        if (!dragging) {
+            dragging = true;
+            lastFrameTimeNanos = 0;
+            currentDragFrames = 0;
+            currentDragJankyFrames = 0;
+            lastFrameUpdateViewLayoutCalls = updateViewLayoutCalls;
+            Choreographer.getInstance().postFrameCallback(dragFrameCallback);
+        }
+    }
+
+    void onDragEnded() {
+        if (dragging) {
+            dragging = false;
+            Choreographer.getInstance().removeFrameCallback(dragFrameCallback);
+            dragFrames.record(currentDragFrames);
+            dragJankyFrames.record(currentDragJankyFrames);
+            totalDragFrames += currentDragFrames;
+            totalDragJankyFrames += currentDragJankyFrames;
+        }
+    }
+
+    private void onDragFrame(long frameTimeNanos) {
+        if (!dragging) {
+            return;
+        }
+        currentDragFrames++;
+        if (lastFrameTimeNanos != 0
+                && frameTimeNanos - lastFrameTimeNanos > frameIntervalNanos * JANK_FRAME_INTERVALS) {
+            currentDragJankyFrames++;
+        }
+        dragFrameWindowUpdates.record(updateViewLayoutCalls - lastFrameUpdateViewLayoutCalls);
+        lastFrameUpdateViewLayoutCalls = updateViewLayoutCalls;
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(dragFrameCallback);
+    }
+
+    void onBubbleTapped() {
+        tapTime = SystemClock.uptimeMillis();
+    }
+
+    void onDialogShown() {
+        if (tapTime >= 0) {
+            tapToDialogTimes.record(SystemClock.uptimeMillis() - tapTime);
+            tapTime = -1;
+        }
+    }
+
+    void onMotionSettled(long durationInMs) {
+        settleTimes.record(durationInMs);
+    }
+
+    void onWindowAdded() {
+        addViewCalls++;
+        liveWindows++;
+    }
+
+    void onWindowRemoved() {
+        removeViewCalls++;
+        liveWindows = Math.max(0, liveWindows - 1);
+    }
+
+    void onWindowUpdated() {
+        updateViewLayoutCalls++;
+    }
+
+    void setLiveBubbles(int liveBubbles) {
+        this.liveBubbles = liveBubbles;
+    }
+
+    /**
+     * Distribution of recorded values in power of two buckets: bucket 0 counts values under
+     * 1, bucket i values from 2^(i-1) up to 2^i, and the last bucket everything above.
+     */
+    public static final class Histogram {
+        public static final int BUCKETS = 20;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long sum;
+        private long max;
+
+        void record(long value) {
+            value = Math.max(0, value);
+            int bucket = value == 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+            counts[Math.min(bucket, BUCKETS - 1)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = 0;
+            }
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+
+        void copyTo(Histogram histogram) {
+            System.arraycopy(counts, 0, histogram.counts, 0, BUCKETS);
+            histogram.count = count;
+            histogram.sum = sum;
+            histogram.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBucketCount(int bucket) {
+            return counts[bucket];
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile from 0 to 100
+         * @return upper bound of the bucket holding the percentile, at most the max value
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * Math.max(0, Math.min(100, percentile)) / 100);
+            long accumulated = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                accumulated += counts[i];
+                if (accumulated >= Math.max(1, rank)) {
+                    return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+    }
+
+    public static final class Snapshot {
+        private final Histogram dragFrames = new Histogram();
+        private final Histogram dragJankyFrames = new Histogram();
+        private final Histogram tapToDialogTimes = new Histogram();
+        private final Histogram settleTimes = new Histogram();
+        private final Histogram dragFrameWindowUpdates = new Histogram();
+        private long totalDragFrames;
+        private long totalDragJankyFrames;
+        private long addViewCalls;
+        private long removeViewCalls;
+        private long updateViewLayoutCalls;
+        private int liveBubbles;
+        private int liveWindows;
+        private long animatorInflations;
+
+        /**
+         * @return frames drawn per drag
+         */
+        public Histogram getDragFrames() {
+            return dragFrames;
+        }
+
+        /**
+         * @return frames per drag that came more than one and a half frame intervals late
+         */
+        public Histogram getDragJankyFrames() {
+            return dragJankyFrames;
+        }
+
+        /**
+         * @return milliseconds from a bubble tap to its dialog view being shown
+         */
+        public Histogram getTapToDialogTimes() {
+            return tapToDialogTimes;
+        }
+
+        /**
+         * @return milliseconds bubble motions took to settle
+         */
+        public Histogram getSettleTimes() {
+            return settleTimes;
+        }
+
+        /**
+         * @return updateViewLayout() calls made between two frames of a drag, its max being the
+         * worst frame
+         */
+        public Histogram getDragFrameWindowUpdates() {
+            return dragFrameWindowUpdates;
+        }
+
+        public long getTotalDragFrames() {
+            return totalDragFrames;
+        }
+
+        public long getTotalDragJankyFrames() {
+            return totalDragJankyFrames;
+        }
+
+        public long getAddViewCalls() {
+            return addViewCalls;
+        }
+
+        public long getRemoveViewCalls() {
+            return removeViewCalls;
+        }
+
+        public long getUpdateViewLayoutCalls() {
+            return updateViewLayoutCalls;
+        }
+
+        public int getLiveBubbles() {
+            return liveBubbles;
+        }
+
+        public int getLiveWindows() {
+            return liveWindows;
+        }
+
+        /**
+         * @return animator resources inflated from XML, which only happens the first time each
+         * one is used by the process
+         */
+        public long getAnimatorInflations() {
+            return animatorInflations;
+        }
+    }
+}
@@ -29,12 +29,13 @@ import android.app.AlertDialog;
 import android.app.Service;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.res.Configuration;
+import android.graphics.Rect;
 import android.graphics.PixelFormat;
 import android.os.Binder;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.util.LongSparseArray;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -42,13 +43,97 @@ import android.view.ViewGroup;
 import android.view.WindowManager;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 
 public class BubblesService extends Service {
+    private static final int ENTRY_ANIMATION_STAGGER_IN_MS = 30;
+    private static final long DEFAULT_TRASH_IDLE_TIMEOUT_IN_MS = 5000;
+    private static final float COMPOSITOR_MAX_SPARSENESS = 2f;
     private BubblesServiceBinder binder = new BubblesServiceBinder();
-    private List<BubbleLayout> bubbles = new ArrayList<>();
+    private BubblesRegistry<BubbleLayout> bubbles = new BubblesRegistry<>();
     private BubbleTrashLayout bubblesTrash;
+    private boolean trashAttached = false;
+    private boolean trashReleaseScheduled = false;
+    private long trashIdleTimeout = DEFAULT_TRASH_IDLE_TIMEOUT_IN_MS;
+    private final Rect trashBounds = new Rect();
+    private int trashScreenWidth;
+    private int trashScreenHeight;
+    private final Runnable releaseTrashRunnable = new Runnable() {
+        @Override
+        public void run() {
+            trashReleaseScheduled = false;
+            if (trashAttached && bubblesTrash.getVisibility() != View.VISIBLE) {
+                removeWindow(bubblesTrash);
+                trashAttached = false;
+            }
+        }
+    };
     private WindowManager windowManager;
+    private BubblesLayoutBatcher layoutBatcher;
+    private BubblesDisplayGeometry displayGeometry;
+    private final BubblesAnimationScheduler animationScheduler = new BubblesAnimationScheduler();
+    private final List<BubbleLayout> pendingBubblesToAdd = new ArrayList<>();
+    private final List<BubbleLayout> pendingBubblesToRemove = new ArrayList<>();
+    private int batchDepth = 0;
+    private BubblesExecutor executor;
+    private boolean compositorMode = false;
+    private int renderPolicy = BubbleLayout.RENDER_POLICY_NONE;
+    private boolean touchPrediction = false;
+    private BubbleBinder bubbleBinder;
+    private final List<BubbleLayout> recycledBubbles = new ArrayList<>();
+    private int bubblesPoolSize = 0;
+    private boolean parkRecycledWindows = false;
+    private BubblesAdapter adapter;
+    private final LongSparseArray<BubbleLayout> adapterBubbles = new LongSparseArray<>();
+    private List<Object> adapterItems = Collections.emptyList();
+    private int adapterGeneration = 0;
+    private ExecutorService diffExecutor;
+    private boolean prewarmDialogs = false;
+    private BubblesMetrics metrics;
+    private final BubbleLayout.OnBubbleTouchListener bubbleTouchListener = new BubbleLayout.OnBubbleTouchListener() {
+        @Override
+        public void onBubbleTouched(final BubbleLayout bubble) {
+            if (prewarmDialogs && bubble.getDialogView() != null && bubble.getDialog() == null) {
+                // Posted so the touch down itself isn't delayed.
+                getExecutor().executeDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        prewarmDialog(bubble);
+                    }
+                }, 0);
+            }
+        }
+    };
+    private final BubbleLayout.OnBubbleTagChangeListener bubbleTagChangeListener = new BubbleLayout.OnBubbleTagChangeListener() {
+        @Override
+        public void onBubbleTagChanged(BubbleLayout bubble) {
+            // A bound bubble can be rebound to another item, it's looked up by its current tag.
+            bubbles.setTag(bubble, bubble.getTag());
+        }
+    };
+    private final List<BubblesCompositorLayout> compositors = new ArrayList<>();
+    private final BubblesClusters compositorClusters = new BubblesClusters();
+    private final Runnable regroupCompositorsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            regroupCompositors();
+        }
+    };
+    private final BubblesCompositorLayout.OnCompositorCollapseListener compositorCollapseListener =
+            new BubblesCompositorLayout.OnCompositorCollapseListener() {
+        @Override
+        public void onCompositorCollapsed(BubblesCompositorLayout compositor) {
+            // Posted, the collapse can happen while the compositor dispatches a touch.
+            getExecutor().executeDelayed(regroupCompositorsRunnable, 0);
+        }
+    };
     private BubblesLayoutCoordinator layoutCoordinator;
     private boolean allowRedundancies = true;
     private RedundancyAnimationListener redundancyAnimationListener;
@@ -62,44 +147,328 @@ public class BubblesService extends Service {
         void onShowingDialogViewAnimation(AlertDialog alertDialog, final BubbleLayout bubbleView, final View view);
     }
 
+    public interface OnBubbleDropTargetListener {
+        void onBubbleEnterDropTarget(BubbleLayout bubble, View target);
+        void onBubbleExitDropTarget(BubbleLayout bubble, View target);
+        void onBubbleDroppedOnTarget(BubbleLayout bubble, View target);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        BubblesAnimatorCache.getInstance().preloadDefaults(this);
+        displayGeometry = new BubblesDisplayGeometry(this);
+        displayGeometry.setOnDisplayGeometryChangeListener(new BubblesDisplayGeometry.OnDisplayGeometryChangeListener() {
+            @Override
+            public void onDisplayGeometryChanged() {
+                refreshTrashLayout();
+            }
+        });
+        displayGeometry.startListening();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        displayGeometry.refresh();
+        refreshTrashLayout();
+    }
+
+    @Override
+    public void onDestroy() {
+        clearBubblesPool();
+        if (diffExecutor != null) {
+            diffExecutor.shutdownNow();
+        }
+        displayGeometry.stopListening();
+        super.onDestroy();
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return binder;
     }
 
     public void clearBubbles() {
-        for (BubbleLayout bubble : bubbles) {
-            recycleBubble(bubble);
+        beginBatch();
+        for (BubbleLayout bubble : bubbles.clear()) {
+            detachBubble(bubble);
         }
-        bubbles.clear();
+        notifyLiveBubblesChanged();
+        commitBatch();
     }
 
-    public void setRedundancyAnimationListener(RedundancyAnimationListener redundancieAnimationListener) {
-        this.redundancyAnimationListener = redundancieAnimationListener;
+    /**
+     * Starts a batch of bubble additions and removals. Window operations are deferred until the
+     * matching commitBatch() and then applied together in a single main thread transaction.
+     * Batches can be nested, only the outermost commit applies them.
+     */
+    public void beginBatch() {
+        batchDepth++;
     }
 
-    public void setViewAnimationListener(OnShowingDialogViewAnimationListener viewAnimationListener) {
-        this.viewAnimationListener = viewAnimationListener;
+    public void commitBatch() {
+        if (batchDepth > 0) {
+            batchDepth--;
+            if (batchDepth == 0) {
+                applyBatch();
+            }
+        }
     }
 
-    private void recycleBubble(final BubbleLayout bubble) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+    private void applyBatch() {
+        if (pendingBubblesToAdd.isEmpty() && pendingBubblesToRemove.isEmpty()) {
+            return;
+        }
+
+        final List<BubbleLayout> bubblesToAdd = new ArrayList<>(pendingBubblesToAdd);
+        final List<BubbleLayout> bubblesToRemove = new ArrayList<>(pendingBubblesToRemove);
+        // Bubbles added back in the same batch aren't recycled, checked once per removal.
+        final Set<BubbleLayout> readdedBubbles = Collections.newSetFromMap(new IdentityHashMap<BubbleLayout, Boolean>());
+        if (!bubblesToRemove.isEmpty()) {
+            readdedBubbles.addAll(bubblesToAdd);
+        }
+        pendingBubblesToAdd.clear();
+        pendingBubblesToRemove.clear();
+        getExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                getWindowManager().removeView(bubble);
-                for (BubbleLayout cachedBubble : bubbles) {
-                    if (cachedBubble == bubble) {
-                        bubble.notifyBubbleRemoved();
-                        bubbles.remove(cachedBubble);
-                        break;
+                for (BubbleLayout bubble : bubblesToRemove) {
+                    boolean recycle = isRecyclable(bubble) && !readdedBubbles.contains(bubble);
+                    if (bubble.getCompositor() != null) {
+                        bubble.getCompositor().removeBubble(bubble);
+                    } else if (bubble.getParent() != null) {
+                        if (recycle && parkRecycledWindows) {
+                            parkBubble(bubble);
+                        } else {
+                            removeWindow(bubble);
+                        }
+                    }
+                    bubble.notifyBubbleRemoved();
+                    if (!recycle) {
+                        releaseDialog(bubble);
                     }
+                    if (recycle) {
+                        bubble.reset();
+                        bubbleBinder.onUnbindBubble(bubble);
+                        recycledBubbles.add(bubble);
+                    }
+                }
+                for (int i = 0; i < bubblesToAdd.size(); i++) {
+                    BubbleLayout bubble = bubblesToAdd.get(i);
+                    bubble.setEntryAnimationDelay(i * ENTRY_ANIMATION_STAGGER_IN_MS);
+                    if (compositorMode) {
+                        if (bubble.getParent() != null) {
+                            removeWindow(bubble);
+                        }
+                        getCompositor().addBubble(bubble);
+                    } else if (bubble.getParent() != null) {
+                        unparkBubble(bubble);
+                    } else {
+                        addWindow(bubble);
+                    }
+                    bubble.markViewParamsCommitted();
                 }
+                removeEmptyCompositors();
             }
         });
     }
 
+    /**
+     * Keeps the window of a recycled bubble attached but invisible and not touchable, so reusing
+     * the bubble is a window relayout instead of a new window.
+     */
+    private void parkBubble(BubbleLayout bubble) {
+        bubble.setVisibility(View.INVISIBLE);
+        bubble.getViewParams().flags |= WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+        updateWindow(bubble);
+    }
+
+    private void unparkBubble(BubbleLayout bubble) {
+        bubble.setVisibility(View.VISIBLE);
+        updateWindow(bubble);
+        bubble.playAnimation();
+    }
+
+    void setAdapter(BubblesAdapter adapter) {
+        this.adapter = adapter;
+        if (adapter != null) {
+            bubbleBinder = adapter;
+        }
+    }
+
+    /**
+     * Diffs the items against the ones submitted before on a background thread, then applies the
+     * removals, rebinds and insertions in a single batch. Results of submissions that have been
+     * superseded by a newer one are dropped.
+     */
+    void submitItems(List<?> items) {
+        if (adapter == null) {
+            return;
+        }
+        final BubblesAdapter currentAdapter = adapter;
+        final List<Object> oldItems = adapterItems;
+        final List<Object> newItems = new ArrayList<Object>(items);
+        final int generation = ++adapterGeneration;
+        getDiffExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final BubblesDiff diff = BubblesDiff.calculate(currentAdapter, oldItems, newItems);
+                getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == adapterGeneration && currentAdapter == adapter) {
+                            applyDiff(diff);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyDiff(BubblesDiff diff) {
+        // Bubbles removed from outside the adapter, e.g. dropped on the trash, are forgotten before
+        // any bubble is obtained, the pool may hand them out again for another item.
+        for (int i = adapterBubbles.size() - 1; i >= 0; i--) {
+            if (!bubbles.contains(adapterBubbles.valueAt(i))) {
+                adapterBubbles.removeAt(i);
+            }
+        }
+        beginBatch();
+        for (long id : diff.removedIds) {
+            BubbleLayout bubble = adapterBubbles.get(id);
+            adapterBubbles.remove(id);
+            if (bubble != null) {
+                recycleBubble(bubble);
+            }
+        }
+        for (int position = 0; position < diff.items.size(); position++) {
+            int flags = diff.flags[position];
+            if ((flags & BubblesDiff.DUPLICATED) != 0) {
+                continue;
+            }
+            Object item = diff.items.get(position);
+            long id = diff.ids[position];
+            BubbleLayout bubble = adapterBubbles.get(id);
+            if (bubble == null) {
+                bubble = obtainBubble();
+                adapter.onBindBubble(bubble, item);
+                if (tryAddBubble(bubble, adapter.getInitialX(item, position), adapter.getInitialY(item, position))) {
+                    adapterBubbles.put(id, bubble);
+                } else {
+                    releaseBubble(bubble);
+                }
+                continue;
+            }
+            if ((flags & BubblesDiff.CHANGED) != 0) {
+                adapter.onBindBubble(bubble, item);
+            }
+            if ((flags & BubblesDiff.MOVED) != 0) {
+                adapter.onBubbleMoved(bubble, item, position);
+            }
+        }
+        adapterItems = diff.items;
+        commitBatch();
+    }
+
+    private ExecutorService getDiffExecutor() {
+        if (diffExecutor == null) {
+            diffExecutor = Executors.newSingleThreadExecutor();
+        }
+        return diffExecutor;
+    }
+
+    void setBubbleBinder(BubbleBinder bubbleBinder) {
+        this.bubbleBinder = bubbleBinder;
+    }
+
+    /**
+     * @param bubblesPoolSize how many removed bubbles are kept to be bound again, 0 disables it
+     * @param parkRecycledWindows true to keep the windows of kept bubbles attached but hidden
+     */
+    void setBubblesPool(int bubblesPoolSize, boolean parkRecycledWindows) {
+        this.bubblesPoolSize = Math.max(0, bubblesPoolSize);
+        this.parkRecycledWindows = parkRecycledWindows;
+    }
+
+    /**
+     * @return a bubble removed before and already unbound, or a new one from the BubbleBinder
+     */
+    BubbleLayout obtainBubble() {
+        int size = recycledBubbles.size();
+        if (size > 0) {
+            return recycledBubbles.remove(size - 1);
+        }
+        BubbleLayout bubble = bubbleBinder.onCreateBubble(this);
+        bubble.setRecyclable(true);
+        if (bubble.getOnBubbleUpdateListener() == null) {
+            bubble.setOnBubbleUpdateListener(bubbleBinder);
+        }
+        return bubble;
+    }
+
+    void releaseBubble(BubbleLayout bubble) {
+        if (isRecyclable(bubble)) {
+            bubble.reset();
+            bubbleBinder.onUnbindBubble(bubble);
+            recycledBubbles.add(bubble);
+        }
+    }
+
+    /**
+     * @return true if the bubble was created by the binder, isn't on screen again and the pool
+     * has room for it
+     */
+    private boolean isRecyclable(BubbleLayout bubble) {
+        return bubbleBinder != null
+                && bubble.isRecyclable()
+                && recycledBubbles.size() < bubblesPoolSize
+                && !recycledBubbles.contains(bubble)
+                && !bubbles.contains(bubble);
+    }
+
+    private void clearBubblesPool() {
+        for (BubbleLayout bubble : recycledBubbles) {
+            releaseDialog(bubble);
+            if (bubble.getParent() != null) {
+                removeWindow(bubble);
+            }
+        }
+        recycledBubbles.clear();
+    }
+
+    /**
+     * @param tag the current tag of the bubble
+     * @return the bubble on screen holding that tag for the longest time, or null
+     */
+    public BubbleLayout findBubbleByTag(Object tag) {
+        return bubbles.findByTag(tag);
+    }
+
+    public void setRedundancyAnimationListener(RedundancyAnimationListener redundancieAnimationListener) {
+        this.redundancyAnimationListener = redundancieAnimationListener;
+    }
+
+    public void setViewAnimationListener(OnShowingDialogViewAnimationListener viewAnimationListener) {
+        this.viewAnimationListener = viewAnimationListener;
+    }
+
+    private void recycleBubble(final BubbleLayout bubble) {
+        if (bubbles.remove(bubble)) {
+            notifyLiveBubblesChanged();
+            beginBatch();
+            detachBubble(bubble);
+            commitBatch();
+        }
+    }
+
+    private void detachBubble(final BubbleLayout bubble) {
+        pendingBubblesToAdd.remove(bubble);
+        pendingBubblesToRemove.add(bubble);
+    }
+
     private void recycleDialog(final BubbleLayout bubbleView, final AlertDialog dialog) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+        getExecutor().execute(new Runnable() {
             @Override
             public void run() {
                 dialog.cancel();
@@ -107,6 +476,160 @@ public class BubblesService extends Service {
         });
     }
 
+    void setExecutor(BubblesExecutor executor) {
+        if (executor != null) {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Hosts all the bubbles in a single overlay window instead of one window per bubble.
+     * Only applies to bubbles added afterwards.
+     */
+    void setCompositorMode(boolean compositorMode) {
+        this.compositorMode = compositorMode;
+    }
+
+    void setRenderPolicy(int renderPolicy) {
+        this.renderPolicy = renderPolicy;
+    }
+
+    void setTouchPrediction(boolean touchPrediction) {
+        this.touchPrediction = touchPrediction;
+    }
+
+    private BubblesCompositorLayout getCompositor() {
+        if (compositors.isEmpty()) {
+            return createCompositor();
+        }
+        return compositors.get(compositors.size() - 1);
+    }
+
+    private BubblesCompositorLayout createCompositor() {
+        BubblesCompositorLayout compositor = new BubblesCompositorLayout(this);
+        compositor.setWindowManager(getWindowManager());
+        compositor.setMetrics(metrics);
+        compositor.setDisplayGeometry(displayGeometry);
+        compositor.setOnCompositorCollapseListener(compositorCollapseListener);
+        WindowManager.LayoutParams layoutParams = buildLayoutParamsForBubble(0, 0);
+        // Hosted bubbles can switch to a render policy using hardware layers at any time.
+        layoutParams.flags |= WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
+        compositor.setViewParams(layoutParams);
+        addWindow(compositor);
+        compositors.add(compositor);
+        return compositor;
+    }
+
+    private void removeEmptyCompositors() {
+        for (int i = compositors.size() - 1; i >= 0; i--) {
+            BubblesCompositorLayout compositor = compositors.get(i);
+            if (compositor.getChildCount() == 0) {
+                removeWindow(compositor);
+                compositors.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Once every compositor is at rest, moves the bubbles so each compositor window hosts a
+     * cluster of bubbles close to each other. A single window over bubbles on opposite walls
+     * would take the touches of everything between them.
+     */
+    private void regroupCompositors() {
+        List<BubbleLayout> compositedBubbles = new ArrayList<>();
+        compositorClusters.clear();
+        for (BubblesCompositorLayout compositor : compositors) {
+            if (!compositor.isCollapsed()) {
+                return;
+            }
+            for (int i = 0; i < compositor.getChildCount(); i++) {
+                BubbleLayout bubble = (BubbleLayout) compositor.getChildAt(i);
+                WindowManager.LayoutParams params = bubble.getViewParams();
+                compositorClusters.add(params.x, params.y,
+                        params.x + bubble.getMeasuredWidth(), params.y + bubble.getMeasuredHeight());
+                compositedBubbles.add(bubble);
+            }
+        }
+        int clusterCount = compositorClusters.build(COMPOSITOR_MAX_SPARSENESS);
+
+        // A cluster keeps the window of its first bubble, unless another cluster took it.
+        List<BubblesCompositorLayout> targets = new ArrayList<>(clusterCount);
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            targets.add(null);
+        }
+        for (int i = 0; i < compositedBubbles.size(); i++) {
+            int cluster = compositorClusters.getCluster(i);
+            BubblesCompositorLayout compositor = compositedBubbles.get(i).getCompositor();
+            if (targets.get(cluster) == null && !targets.contains(compositor)) {
+                targets.set(cluster, compositor);
+            }
+        }
+
+        for (int i = 0; i < compositedBubbles.size(); i++) {
+            BubbleLayout bubble = compositedBubbles.get(i);
+            int cluster = compositorClusters.getCluster(i);
+            if (targets.get(cluster) == null) {
+                targets.set(cluster, createCompositor());
+            }
+            BubblesCompositorLayout target = targets.get(cluster);
+            if (bubble.getCompositor() != target) {
+                bubble.getCompositor().removeBubble(bubble);
+                bubble.skipEntryAnimation();
+                target.addBubble(bubble);
+            }
+        }
+        removeEmptyCompositors();
+    }
+
+    void setMetrics(BubblesMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.setRefreshRate(getWindowManager().getDefaultDisplay().getRefreshRate());
+            metrics.setLiveBubbles(bubbles.size());
+        }
+    }
+
+    private void addWindow(BubbleBaseLayout view) {
+        getWindowManager().addView(view, view.getViewParams());
+        if (metrics != null) {
+            metrics.onWindowAdded();
+        }
+    }
+
+    private void removeWindow(BubbleBaseLayout view) {
+        getWindowManager().removeView(view);
+        if (metrics != null) {
+            metrics.onWindowRemoved();
+        }
+    }
+
+    private void updateWindow(BubbleBaseLayout view) {
+        getWindowManager().updateViewLayout(view, view.getViewParams());
+        if (metrics != null) {
+            metrics.onWindowUpdated();
+        }
+    }
+
+    private void notifyLiveBubblesChanged() {
+        if (metrics != null) {
+            metrics.setLiveBubbles(bubbles.size());
+        }
+    }
+
+    private BubblesExecutor getExecutor() {
+        if (executor == null) {
+            executor = new MainThreadBubblesExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the system window manager, so window operations can be counted in tests.
+     */
+    void setWindowManager(WindowManager windowManager) {
+        this.windowManager = windowManager;
+    }
+
     private WindowManager getWindowManager() {
         if (windowManager == null) {
             windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
@@ -114,16 +637,30 @@ public class BubblesService extends Service {
         return windowManager;
     }
 
+    private BubblesLayoutBatcher getLayoutBatcher() {
+        if (layoutBatcher == null) {
+            layoutBatcher = new BubblesLayoutBatcher();
+        }
+        return layoutBatcher;
+    }
+
     public void addBubble(BubbleLayout bubble, int x, int y) {
-        if (!allowRedundancies && bubble.getTag() != null) {
-            for (BubbleLayout bubbleLayout : bubbles) {
-                if (bubble.getTag().equals(bubbleLayout.getTag())) {
-                    if (redundancyAnimationListener != null) {
-                        redundancyAnimationListener.redundanciesAnimation(bubbleLayout);
-                    }
+        tryAddBubble(bubble, x, y);
+    }
 
-                    return;
+    /**
+     * Same as addBubble(), telling whether the bubble was added.
+     * @return false if the bubble was rejected as redundant
+     */
+    public boolean tryAddBubble(BubbleLayout bubble, int x, int y) {
+        if (!allowRedundancies && bubble.getTag() != null) {
+            BubbleLayout bubbleLayout = bubbles.findByTag(bubble.getTag());
+            if (bubbleLayout != null) {
+                if (redundancyAnimationListener != null) {
+                    redundancyAnimationListener.redundanciesAnimation(bubbleLayout);
                 }
+
+                return false;
             }
         }
 
@@ -131,35 +668,151 @@ public class BubblesService extends Service {
         bubble.setWindowManager(getWindowManager());
         bubble.setViewParams(layoutParams);
         bubble.setLayoutCoordinator(layoutCoordinator);
-        bubbles.add(bubble);
-        addViewToWindow(bubble);
+        bubble.setLayoutBatcher(getLayoutBatcher());
+        bubble.setDisplayGeometry(displayGeometry);
+        bubble.setAnimationScheduler(animationScheduler);
+        bubble.setDefaultRenderPolicy(renderPolicy);
+        bubble.setDefaultTouchPrediction(touchPrediction);
+        bubble.setOnBubbleTouchListener(bubbleTouchListener);
+        bubble.setOnBubbleTagChangeListener(bubbleTagChangeListener);
+        bubble.setMetrics(metrics);
+        if (bubble.getRenderPolicy() != BubbleLayout.RENDER_POLICY_NONE) {
+            // Without it the layers of the bubble would fall back to software drawing caches.
+            layoutParams.flags |= WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
+        }
+        recycledBubbles.remove(bubble);
+        bubbles.add(bubble, bubble.getTag());
+        notifyLiveBubblesChanged();
+        beginBatch();
+        pendingBubblesToAdd.add(bubble);
+        commitBatch();
+        return true;
     }
 
     void addTrash(int trashLayoutResourceId) {
         if (trashLayoutResourceId != 0) {
             bubblesTrash = new BubbleTrashLayout(this);
-            bubblesTrash.setWindowManager(windowManager);
+            bubblesTrash.setWindowManager(getWindowManager());
+            bubblesTrash.setMetrics(metrics);
             bubblesTrash.setViewParams(buildLayoutParamsForTrash());
             bubblesTrash.setVisibility(View.GONE);
             LayoutInflater.from(this).inflate(trashLayoutResourceId, bubblesTrash, true);
-            addViewToWindow(bubblesTrash);
             initializeLayoutCoordinator();
         }
     }
 
+    void setTrashIdleTimeout(long trashIdleTimeout) {
+        if (trashIdleTimeout > 0) {
+            this.trashIdleTimeout = trashIdleTimeout;
+        }
+    }
+
+    /**
+     * Attaches the trash window if it isn't, sized to the bounds of its drop targets. Called when a
+     * bubble is touched so the window is ready once the drag starts.
+     */
+    void prewarmTrash() {
+        if (bubblesTrash == null) {
+            return;
+        }
+        // Called on every drag event, so the executor is only touched if a release is pending.
+        if (trashReleaseScheduled) {
+            getExecutor().cancel(releaseTrashRunnable);
+            trashReleaseScheduled = false;
+        }
+        if (!trashAttached || !isTrashLayoutForScreen()) {
+            layoutTrash();
+        }
+    }
+
+    /**
+     * Lays the attached trash out again once the screen size changes, so its window and the drop
+     * targets bounds match the new screen. A detached trash is laid out on the next prewarmTrash().
+     */
+    private void refreshTrashLayout() {
+        if (bubblesTrash != null && trashAttached && !isTrashLayoutForScreen()) {
+            layoutTrash();
+        }
+    }
+
+    private boolean isTrashLayoutForScreen() {
+        return trashScreenWidth == displayGeometry.getScreenWidth()
+                && trashScreenHeight == displayGeometry.getScreenHeight();
+    }
+
+    private void layoutTrash() {
+        int screenWidth = displayGeometry.getScreenWidth();
+        int screenHeight = displayGeometry.getScreenHeight();
+        trashScreenWidth = screenWidth;
+        trashScreenHeight = screenHeight;
+        bubblesTrash.layoutForScreen(screenWidth, screenHeight);
+        if (layoutCoordinator.getDropTargetsBounds(trashBounds)) {
+            trashBounds.set(Math.max(0, trashBounds.left), Math.max(0, trashBounds.top),
+                    Math.min(screenWidth, trashBounds.right), Math.min(screenHeight, trashBounds.bottom));
+        } else {
+            trashBounds.set(0, 0, screenWidth, screenHeight);
+        }
+        bubblesTrash.setWindowBounds(trashBounds.left, trashBounds.top,
+                trashBounds.width(), trashBounds.height());
+        if (trashAttached) {
+            updateWindow(bubblesTrash);
+        } else {
+            addWindow(bubblesTrash);
+            trashAttached = true;
+        }
+    }
+
+    /**
+     * Detaches the trash window once it has been hidden for the trash idle timeout.
+     */
+    void scheduleTrashRelease() {
+        getExecutor().cancel(releaseTrashRunnable);
+        getExecutor().executeDelayed(releaseTrashRunnable, trashIdleTimeout);
+        trashReleaseScheduled = true;
+    }
+
     void addTrashAnimations(int shownAnimatorResourceId, int hideAnimatorResourceId) {
         if (shownAnimatorResourceId != 0 && hideAnimatorResourceId != 0 && bubblesTrash != null) {
+            BubblesAnimatorCache.getInstance().preload(this, shownAnimatorResourceId);
+            BubblesAnimatorCache.getInstance().preload(this, hideAnimatorResourceId);
             bubblesTrash.setTrashAnimatorResourceIds(shownAnimatorResourceId, hideAnimatorResourceId);
         }
     }
 
+    void addDropTarget(int targetViewResourceId, OnBubbleDropTargetListener listener) {
+        if (layoutCoordinator != null && listener != null) {
+            layoutCoordinator.addDropTarget(targetViewResourceId, listener);
+        }
+    }
+
     public void setAllowRedundancies(boolean allowRedundancies) {
         this.allowRedundancies = allowRedundancies;
     }
 
-    public AlertDialog addDialogView(final BubbleLayout bubbleView, final View view, final DialogInterface.OnDismissListener onDismissListener, final DialogInterface.OnCancelListener onCancelListener) {
-        final AlertDialog.Builder builder = new AlertDialog.Builder(BubblesService.this).setView(view);
-        final AlertDialog alertDialog = builder.create();
+    /**
+     * Builds the dialog window of a bubble ahead of its first addDialogView(), so opening it
+     * only has to show an existing window.
+     */
+    void prewarmDialog(BubbleLayout bubbleView) {
+        if (bubbleView.getDialogView() != null) {
+            obtainDialog(bubbleView, bubbleView.getDialogView());
+        }
+    }
+
+    void setPrewarmDialogs(boolean prewarmDialogs) {
+        this.prewarmDialogs = prewarmDialogs;
+    }
+
+    private AlertDialog obtainDialog(final BubbleLayout bubbleView, final View view) {
+        if (bubbleView.getDialog() != null && bubbleView.getDialogContent() == view) {
+            return bubbleView.getDialog();
+        }
+        releaseDialog(bubbleView);
+        if (view.getParent() != null) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+
+        final AlertDialog alertDialog = new AlertDialog.Builder(BubblesService.this).setView(view).create();
 
         int typeOverlay = WindowManager.LayoutParams.TYPE_PHONE;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -170,54 +823,69 @@ public class BubblesService extends Service {
             alertDialog.getWindow().setType(typeOverlay);
         }
 
-        alertDialog.setOnDismissListener(onDismissListener);
-        alertDialog.setOnCancelListener(onCancelListener);
+        alertDialog.setOnShowListener(new DialogInterface.OnShowListener() {
+            @Override
+            public void onShow(DialogInterface dialog) {
+                if (metrics != null) {
+                    metrics.onDialogShown();
+                }
+                if (viewAnimationListener != null
+                        && android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
+                    viewAnimationListener.onShowingDialogViewAnimation(alertDialog, bubbleView, view);
+                }
+            }
+        });
 
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
+            // Inflates the dialog decor now instead of on the first show().
+            alertDialog.create();
+        }
 
-            alertDialog.setOnShowListener(new DialogInterface.OnShowListener() {
-                @Override
-                public void onShow(DialogInterface dialog) {
-                    if (viewAnimationListener != null) {
-                        viewAnimationListener.onShowingDialogViewAnimation(alertDialog, bubbleView, view);
-                    }
-                }
-            });
+        bubbleView.setDialog(alertDialog, view);
+        return alertDialog;
+    }
+
+    private void releaseDialog(BubbleLayout bubbleView) {
+        AlertDialog dialog = bubbleView.getDialog();
+        if (dialog != null) {
+            if (dialog.isShowing()) {
+                dialog.dismiss();
+            }
+            bubbleView.setDialog(null, null);
         }
+    }
 
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+    public AlertDialog addDialogView(final BubbleLayout bubbleView, final View view, final DialogInterface.OnDismissListener onDismissListener, final DialogInterface.OnCancelListener onCancelListener) {
+        final AlertDialog alertDialog = obtainDialog(bubbleView, view);
+        alertDialog.setOnDismissListener(onDismissListener);
+
+        getExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                if (view.getParent() != null) {
-                    ((ViewGroup) view.getParent()).removeView(view);
-                }
-
-                bubbleView.setOnBubbleGoToCenterListener(new BubbleLayout.OnBubbleGoToCenterListener() {
+                final int oldX = bubbleView.getViewParams().x;
+                final int oldY = bubbleView.getViewParams().y;
+                alertDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
                     @Override
-                    public void onBubbleGoToCenterListener(BubbleLayout bubble, final int oldX, final int oldY) {
-                        Handler handler = new Handler();
-                        handler.postDelayed(new Runnable() {
-                            @Override
-                            public void run() {
-                                bubbleView.setVisibility(View.INVISIBLE);
-                                alertDialog.setCancelable(true);
-
-                                alertDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
-                                    @Override
-                                    public void onCancel(DialogInterface dialog) {
-                                        bubbleView.setVisibility(View.VISIBLE);
-                                        bubbleView.goTo(oldX, oldY);
-                                    }
-                                });
-                            }
-                        }, 1000);
-
-                        alertDialog.setCancelable(false);
-                        alertDialog.show();
+                    public void onCancel(DialogInterface dialog) {
+                        bubbleView.setVisibility(View.VISIBLE);
+                        bubbleView.goTo(oldX, oldY);
+                        if (onCancelListener != null) {
+                            onCancelListener.onCancel(dialog);
+                        }
                     }
                 });
+                alertDialog.setCancelable(false);
 
-                bubbleView.goToCenter();
+                bubbleView.goToCenter(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (alertDialog.isShowing()) {
+                            bubbleView.setVisibility(View.INVISIBLE);
+                            alertDialog.setCancelable(true);
+                        }
+                    }
+                });
+                alertDialog.show();
             }
         });
 
@@ -229,15 +897,7 @@ public class BubblesService extends Service {
                 .setWindowManager(getWindowManager())
                 .setTrashView(bubblesTrash)
                 .build();
-    }
-
-    private void addViewToWindow(final BubbleBaseLayout view) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-                getWindowManager().addView(view, view.getViewParams());
-            }
-        });
+        bubblesTrash.setLayoutCoordinator(layoutCoordinator);
     }
 
     private WindowManager.LayoutParams buildLayoutParamsForBubble(int x, int y) {
@@ -273,6 +933,7 @@ public class BubblesService extends Service {
                 typeOverlay,
                 WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
                 PixelFormat.TRANSPARENT);
+        params.gravity = Gravity.TOP | Gravity.START;
         params.x = x;
         params.y = y;
         return params;
@@ -282,6 +943,14 @@ public class BubblesService extends Service {
         recycleBubble(bubble);
     }
 
+    public void removeBubbles(Collection<BubbleLayout> bubblesToRemove) {
+        beginBatch();
+        for (BubbleLayout bubble : bubblesToRemove) {
+            recycleBubble(bubble);
+        }
+        commitBatch();
+    }
+
     public void removeDialog(final BubbleLayout bubbleView, AlertDialog dialog) {
         recycleDialog(bubbleView, dialog);
     }
@@ -0,0 +1,104 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.KeyEvent;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubbleExpandTest {
+    private static final int BUBBLE_SIZE = 100;
+
+    private BubblesServiceFixture fixture;
+    private BubbleLayout bubble;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+        bubble.setDialogView(new View(fixture.service));
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void expandedBubbleWindowTakesFocus() {
+        bubble.expand();
+        fixture.nextFrame();
+
+        assertFalse(isNotFocusable(bubble.getViewParams()));
+        assertFalse(isNotFocusable(fixture.windowManager.lastParams));
+    }
+
+    @Test
+    public void collapseGivesTheFocusBack() {
+        bubble.expand();
+        fixture.nextFrame();
+
+        bubble.collapse();
+        fixture.nextFrame();
+
+        assertTrue(isNotFocusable(bubble.getViewParams()));
+        assertTrue(isNotFocusable(fixture.windowManager.lastParams));
+    }
+
+    @Test
+    public void backCollapsesTheExpandedBubble() {
+        bubble.expand();
+
+        assertTrue(bubble.dispatchKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_BACK)));
+        assertTrue(bubble.isExpanded());
+        assertTrue(bubble.dispatchKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, KeyEvent.KEYCODE_BACK)));
+
+        assertFalse(bubble.isExpanded());
+        assertTrue(isNotFocusable(bubble.getViewParams()));
+    }
+
+    @Test
+    public void backIsLeftAloneWhileCollapsed() {
+        assertFalse(bubble.dispatchKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, KeyEvent.KEYCODE_BACK)));
+        assertEquals(0, fixture.windowManager.updateViewLayoutCalls);
+    }
+
+    private static boolean isNotFocusable(WindowManager.LayoutParams params) {
+        return (params.flags & WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE) != 0;
+    }
+}
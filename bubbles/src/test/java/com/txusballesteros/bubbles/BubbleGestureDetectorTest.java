@@ -0,0 +1,140 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubbleGestureDetectorTest {
+    private static final int TOUCH_INTERVAL_IN_MS = 8;
+    private static final int DRAG_DISTANCE = 200;
+
+    private BubbleGestureDetector detector;
+    private RecordingListener listener;
+    private long eventTime;
+
+    @Before
+    public void setUp() {
+        listener = new RecordingListener();
+        detector = new BubbleGestureDetector(new View(RuntimeEnvironment.application), listener);
+    }
+
+    @Test
+    public void dragIsReleasedOnUp() {
+        touch(MotionEvent.ACTION_DOWN, 0);
+        touch(MotionEvent.ACTION_MOVE, DRAG_DISTANCE);
+        touch(MotionEvent.ACTION_UP, DRAG_DISTANCE);
+
+        assertEquals(1, listener.downs);
+        assertTrue(listener.drags > 0);
+        assertEquals(1, listener.releases);
+        assertFalse(detector.isTracking());
+    }
+
+    @Test
+    public void eventsAfterARecycleAreIgnoredUntilTheNextDown() {
+        touch(MotionEvent.ACTION_DOWN, 0);
+        touch(MotionEvent.ACTION_MOVE, DRAG_DISTANCE);
+        int drags = listener.drags;
+
+        detector.recycle();
+        touch(MotionEvent.ACTION_MOVE, 2 * DRAG_DISTANCE);
+        touch(MotionEvent.ACTION_UP, 2 * DRAG_DISTANCE);
+
+        assertEquals(drags, listener.drags);
+        assertEquals(0, listener.releases);
+        assertFalse(detector.isTracking());
+
+        touch(MotionEvent.ACTION_DOWN, 0);
+        touch(MotionEvent.ACTION_MOVE, DRAG_DISTANCE);
+        touch(MotionEvent.ACTION_UP, DRAG_DISTANCE);
+
+        assertEquals(2, listener.downs);
+        assertEquals(1, listener.releases);
+    }
+
+    @Test
+    public void cancelAfterARecycleIsIgnored() {
+        touch(MotionEvent.ACTION_DOWN, 0);
+
+        detector.recycle();
+        touch(MotionEvent.ACTION_CANCEL, 0);
+
+        assertEquals(0, listener.cancels);
+    }
+
+    private void touch(int action, int x) {
+        eventTime += TOUCH_INTERVAL_IN_MS;
+        MotionEvent event = MotionEvent.obtain(0, eventTime, action, x, 0, 0);
+        detector.onTouchEvent(event);
+        event.recycle();
+    }
+
+    private static class RecordingListener implements BubbleGestureDetector.Listener {
+        private int downs;
+        private int drags;
+        private int releases;
+        private int cancels;
+
+        @Override
+        public void onGestureDown(MotionEvent event) {
+            downs++;
+        }
+
+        @Override
+        public void onGestureDrag(MotionEvent event) {
+            drags++;
+        }
+
+        @Override
+        public void onGestureRelease(float velocityX, float velocityY, boolean fling) {
+            releases++;
+        }
+
+        @Override
+        public void onGestureCancel() {
+            cancels++;
+        }
+
+        @Override
+        public void onGestureTap() { }
+
+        @Override
+        public void onGestureLongPress() { }
+    }
+}
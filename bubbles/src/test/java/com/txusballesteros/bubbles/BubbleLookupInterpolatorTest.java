@@ -0,0 +1,166 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.animation.Animator;
+import android.animation.AnimatorSet;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.OvershootInterpolator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Baked curves against their sources on a grid much denser than the lookup tables, so the
+ * error between samples is measured and not only at their midpoints.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubbleLookupInterpolatorTest {
+    private static final int GRID_POINTS = 100000;
+    // A hundredth of a pixel on a 100 pixels animation.
+    private static final float MAX_ERROR = 0.0001f;
+    private static final float MAX_ERROR_UNDERESTIMATION = 1.05f;
+
+    @Test
+    public void bakedBounceFollowsItsCurve() {
+        final double amplitude = 0.2;
+        final double frequency = 20;
+        TimeInterpolator curve = new TimeInterpolator() {
+            @Override
+            public float getInterpolation(float time) {
+                return (float) (-1 * Math.pow(Math.E, -time / amplitude) * Math.cos(frequency + time) + 1);
+            }
+        };
+
+        float error = getMaxError(curve, new BubbleBounceInterpolator(amplitude, frequency));
+        assertTrue("Error on the grid: " + error, error <= MAX_ERROR);
+    }
+
+    @Test
+    public void bakedDefaultCurvesFollowTheirSources() {
+        for (TimeInterpolator source : getDefaultCurves()) {
+            assertFollows(source, new BubbleLookupInterpolator(source));
+        }
+    }
+
+    @Test
+    public void animatorsUseBakedDefaultCurves() {
+        Context context = RuntimeEnvironment.application;
+        int[] animatorResourceIds = new int[] {
+                R.animator.bubble_shown_animator,
+                R.animator.bubble_down_click_animator,
+                R.animator.bubble_up_click_animator,
+                R.animator.bubble_trash_shown_animator,
+                R.animator.bubble_trash_hide_animator,
+                R.animator.bubble_trash_shown_magnetism_animator,
+                R.animator.bubble_trash_hide_magnetism_animator,
+        };
+        List<TimeInterpolator> sources = getDefaultCurves();
+
+        for (int animatorResourceId : animatorResourceIds) {
+            Animator animator = BubblesAnimatorCache.getInstance().obtain(context, animatorResourceId);
+            List<ValueAnimator> valueAnimators = new ArrayList<>();
+            collectValueAnimators(animator, valueAnimators);
+            assertFalse(valueAnimators.isEmpty());
+            for (ValueAnimator valueAnimator : valueAnimators) {
+                TimeInterpolator baked = valueAnimator.getInterpolator();
+                assertTrue(baked instanceof BubbleLookupInterpolator);
+                float error = Float.MAX_VALUE;
+                for (TimeInterpolator source : sources) {
+                    error = Math.min(error, getMaxError(source, baked));
+                }
+                assertTrue("Error of a baked animator curve: " + error, error <= MAX_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void lookupIsExactOnSamplesAndClamped() {
+        TimeInterpolator source = new AccelerateDecelerateInterpolator();
+        BubbleLookupInterpolator baked = new BubbleLookupInterpolator(source, 5);
+
+        for (int i = 0; i <= 4; i++) {
+            assertEquals(source.getInterpolation(i / 4f), baked.getInterpolation(i / 4f), 0);
+        }
+        assertEquals(source.getInterpolation(0), baked.getInterpolation(-1), 0);
+        assertEquals(source.getInterpolation(1), baked.getInterpolation(2), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lookupNeedsTwoSamples() {
+        new BubbleLookupInterpolator(new AccelerateDecelerateInterpolator(), 1);
+    }
+
+    private static List<TimeInterpolator> getDefaultCurves() {
+        List<TimeInterpolator> curves = new ArrayList<>();
+        // What @android:interpolator/overshoot and decelerate_cubic are made of.
+        curves.add(new OvershootInterpolator());
+        curves.add(new DecelerateInterpolator(1.5f));
+        // Animators without an interpolator attribute use the ValueAnimator default.
+        curves.add(new AccelerateDecelerateInterpolator());
+        return curves;
+    }
+
+    private static void collectValueAnimators(Animator animator, List<ValueAnimator> result) {
+        if (animator instanceof AnimatorSet) {
+            for (Animator child : ((AnimatorSet) animator).getChildAnimations()) {
+                collectValueAnimators(child, result);
+            }
+        } else if (animator instanceof ValueAnimator) {
+            result.add((ValueAnimator) animator);
+        }
+    }
+
+    private static void assertFollows(TimeInterpolator source, BubbleLookupInterpolator baked) {
+        float error = getMaxError(source, baked);
+        assertTrue("Error on the grid: " + error, error <= MAX_ERROR);
+        assertTrue("Reported error " + baked.getMaxError() + " under the grid error " + error,
+                error <= baked.getMaxError() * MAX_ERROR_UNDERESTIMATION);
+    }
+
+    private static float getMaxError(TimeInterpolator source, TimeInterpolator baked) {
+        float error = 0;
+        for (int i = 0; i <= GRID_POINTS; i++) {
+            float input = i / (float) GRID_POINTS;
+            error = Math.max(error, Math.abs(source.getInterpolation(input) - baked.getInterpolation(input)));
+        }
+        return error;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.graphics.Rect;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, qualifiers = "w360dp-h640dp-xxhdpi")
+public class BubbleMotionBoundsTest {
+    private static final int BUBBLE_SIZE = 100;
+    private static final int MAX_MOTION_FRAMES = 120;
+
+    private BubblesServiceFixture fixture;
+    private Rect usableBounds;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        usableBounds = new BubblesDisplayGeometry(fixture.service).getUsableBounds();
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void usableBoundsLeaveOutTheStatusBar() {
+        BubblesDisplayGeometry geometry = new BubblesDisplayGeometry(fixture.service);
+
+        assertTrue(geometry.getInsetTop() > 0);
+        assertEquals(geometry.getInsetTop(), usableBounds.top);
+        assertEquals(geometry.getScreenWidth(), usableBounds.width());
+        assertEquals(geometry.getScreenHeight(), usableBounds.bottom);
+        assertTrue(geometry.getDensity() > 0);
+    }
+
+    @Test
+    public void wallMotionStopsBelowTheStatusBar() {
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, usableBounds.width() / 4, 0);
+
+        bubble.goToWall();
+        waitForMotion();
+
+        assertEquals(usableBounds.left, bubble.getViewParams().x);
+        assertEquals(usableBounds.top, bubble.getViewParams().y);
+    }
+
+    @Test
+    public void wallMotionStopsAboveTheBottomOfTheScreen() {
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, usableBounds.width() / 4 * 3,
+                usableBounds.bottom);
+
+        bubble.goToWall();
+        waitForMotion();
+
+        assertEquals(usableBounds.right - BUBBLE_SIZE, bubble.getViewParams().x);
+        assertEquals(usableBounds.bottom - BUBBLE_SIZE, bubble.getViewParams().y);
+    }
+
+    @Test
+    public void centerIsTheCenterOfTheUsableBounds() {
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+
+        bubble.goToCenter();
+        waitForMotion();
+
+        assertEquals(usableBounds.centerX() - (BUBBLE_SIZE / 2), bubble.getViewParams().x);
+        assertEquals(usableBounds.centerY() - (BUBBLE_SIZE / 2), bubble.getViewParams().y);
+    }
+
+    private void waitForMotion() {
+        for (int frame = 0; frame < MAX_MOTION_FRAMES; frame++) {
+            fixture.nextFrame();
+        }
+    }
+}
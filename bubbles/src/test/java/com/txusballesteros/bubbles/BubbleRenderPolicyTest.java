@@ -0,0 +1,107 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubbleRenderPolicyTest {
+    private static final int BUBBLE_SIZE = 100;
+
+    private BubblesServiceFixture fixture;
+    private CountingWindowManager windowManager;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        windowManager = fixture.windowManager;
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void compositorWindowsAreHardwareAccelerated() {
+        fixture.service.setCompositorMode(true);
+
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+
+        assertHardwareAccelerated(bubble.getCompositor().getViewParams());
+    }
+
+    @Test
+    public void bubbleWindowIsHardwareAcceleratedForTheDefaultPolicy() {
+        fixture.service.setRenderPolicy(BubbleLayout.RENDER_POLICY_HARDWARE_LAYER);
+
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+
+        assertSame(bubble, windowManager.lastView);
+        assertHardwareAccelerated(windowManager.lastParams);
+    }
+
+    @Test
+    public void policyChangedAfterTheBubbleIsAddedAddsItsWindowAgain() {
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+        windowManager.reset();
+
+        bubble.setRenderPolicy(BubbleLayout.RENDER_POLICY_SNAPSHOT);
+
+        assertEquals(1, windowManager.removeViewCalls);
+        assertEquals(1, windowManager.addViewCalls);
+        assertSame(bubble, windowManager.lastView);
+        assertHardwareAccelerated(windowManager.lastParams);
+        assertEquals(WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
+                windowManager.lastParams.flags & WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE);
+    }
+
+    @Test
+    public void policyChangedInsideACompositorKeepsTheWindow() {
+        fixture.service.setCompositorMode(true);
+        BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+        windowManager.reset();
+
+        bubble.setRenderPolicy(BubbleLayout.RENDER_POLICY_HARDWARE_LAYER);
+
+        assertEquals(0, windowManager.removeViewCalls + windowManager.addViewCalls);
+    }
+
+    private static void assertHardwareAccelerated(WindowManager.LayoutParams params) {
+        assertTrue((params.flags & WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED) != 0);
+    }
+}
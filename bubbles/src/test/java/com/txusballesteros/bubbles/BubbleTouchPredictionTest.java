@@ -0,0 +1,110 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.MotionEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubbleTouchPredictionTest {
+    private static final int BUBBLE_SIZE = 100;
+    private static final int BUBBLE_TOP = 300;
+    private static final int TOUCH_Y = BUBBLE_TOP + (BUBBLE_SIZE / 2);
+    private static final int MOVE_DISTANCE = 20;
+    private static final int MOVES = 10;
+
+    private BubblesServiceFixture fixture;
+    private BubbleLayout bubble;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        fixture.service.setTouchPrediction(true);
+        bubble = fixture.addBubble(BUBBLE_SIZE, 0, BUBBLE_TOP);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void dragIsPredictedAheadOfTheFinger() {
+        int touchX = drag();
+
+        assertTrue(bubble.getViewParams().x > touchX - (BUBBLE_SIZE / 2));
+        touch(MotionEvent.ACTION_UP, touchX);
+    }
+
+    @Test
+    public void releasedBubbleIsPlacedUnderTheFinger() {
+        int touchX = drag();
+
+        touch(MotionEvent.ACTION_UP, touchX);
+
+        assertEquals(touchX - (BUBBLE_SIZE / 2), bubble.getViewParams().x);
+        assertEquals(BUBBLE_TOP, bubble.getViewParams().y);
+    }
+
+    @Test
+    public void fingerHeldStillBringsTheBubbleUnderIt() {
+        int touchX = drag();
+
+        // Moves without any motion, as reported by a finger resting on the screen.
+        for (int i = 0; i < MOVES; i++) {
+            touch(MotionEvent.ACTION_MOVE, touchX);
+        }
+
+        assertEquals(touchX - (BUBBLE_SIZE / 2), bubble.getViewParams().x);
+        touch(MotionEvent.ACTION_UP, touchX);
+    }
+
+    /**
+     * @return where the finger stops, after a fast drag sideways
+     */
+    private int drag() {
+        int touchX = BUBBLE_SIZE / 2;
+        touch(MotionEvent.ACTION_DOWN, touchX);
+        for (int i = 0; i < MOVES; i++) {
+            touchX += MOVE_DISTANCE;
+            touch(MotionEvent.ACTION_MOVE, touchX);
+        }
+        return touchX;
+    }
+
+    private void touch(int action, int x) {
+        fixture.touch(bubble, action, x, TOUCH_Y);
+    }
+}
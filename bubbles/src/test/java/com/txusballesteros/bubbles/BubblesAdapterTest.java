@@ -0,0 +1,102 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubblesAdapterTest {
+    private static final long DIFF_TIMEOUT_IN_MS = 5000;
+
+    private BubblesServiceFixture fixture;
+    private BubblesService service;
+
+    @Before
+    public void setUp() {
+        // Diffs are applied from the paused main looper, the test runs them once they're posted.
+        fixture = new BubblesServiceFixture();
+        service = fixture.service;
+        service.setAdapter(new BubblesDiffTest.ItemsAdapter());
+        service.setBubblesPool(4, false);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void bubbleRemovedFromOutsideIsNotSharedWithANewItem() {
+        submitItems("a1", "b1");
+        BubbleLayout trashedBubble = service.findBubbleByTag("b1");
+        assertNotNull(trashedBubble);
+        // As if dropped on the trash, the bubble goes back to the pool.
+        service.removeBubble(trashedBubble);
+        ShadowLooper.runUiThreadTasks();
+
+        // The new item comes first and takes the pooled bubble.
+        submitItems("c1", "a1", "b1");
+
+        BubbleLayout newBubble = service.findBubbleByTag("c1");
+        BubbleLayout readdedBubble = service.findBubbleByTag("b1");
+        assertNotNull(newBubble);
+        assertNotNull(readdedBubble);
+        assertNotSame(newBubble, readdedBubble);
+        assertNotSame(service.findBubbleByTag("a1"), readdedBubble);
+
+        submitItems("c1", "a1", "b2");
+
+        assertEquals("c1", newBubble.getTag());
+        assertEquals("b2", readdedBubble.getTag());
+    }
+
+    private void submitItems(Object... items) {
+        int pendingMessages = Robolectric.getForegroundThreadScheduler().size();
+        service.submitItems(Arrays.asList(items));
+        long deadline = System.currentTimeMillis() + DIFF_TIMEOUT_IN_MS;
+        while (Robolectric.getForegroundThreadScheduler().size() == pendingMessages) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The diff wasn't posted");
+            }
+            Thread.yield();
+        }
+        ShadowLooper.runUiThreadTasks();
+    }
+}
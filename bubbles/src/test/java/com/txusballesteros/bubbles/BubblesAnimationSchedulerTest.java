@@ -0,0 +1,111 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, qualifiers = "w360dp-h640dp-xxhdpi")
+public class BubblesAnimationSchedulerTest {
+    private static final int BUBBLE_SIZE = 100;
+    private static final int MOTION_FRAMES = 60;
+
+    private BubblesServiceFixture fixture;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void motionRestartedWhenItEndsKeepsRunning() {
+        BubblesAnimationScheduler scheduler = new BubblesAnimationScheduler();
+        RestartingMotion motion = new RestartingMotion(scheduler);
+        scheduler.start(motion);
+
+        for (int frame = 0; frame < MOTION_FRAMES; frame++) {
+            fixture.nextFrame();
+        }
+
+        assertEquals(RestartingMotion.FRAMES, motion.frames);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void moveChainedFromTheEndActionReachesItsDestination() {
+        final BubbleLayout bubble = fixture.addBubble(BUBBLE_SIZE, 0, 0);
+        bubble.setMoveAnimationDuration(100);
+
+        bubble.goToCenter(new Runnable() {
+            @Override
+            public void run() {
+                bubble.goTo(0, 0);
+            }
+        });
+        for (int frame = 0; frame < MOTION_FRAMES; frame++) {
+            fixture.nextFrame();
+        }
+
+        assertEquals(0, bubble.getViewParams().x);
+        assertEquals(0, bubble.getViewParams().y);
+    }
+
+    /**
+     * Ends on its first frame and starts itself again, as an end action chaining another move
+     * would, then runs for a few more frames.
+     */
+    private static class RestartingMotion implements BubblesAnimationScheduler.Motion {
+        private static final int FRAMES = 3;
+        private final BubblesAnimationScheduler scheduler;
+        private int frames;
+
+        private RestartingMotion(BubblesAnimationScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public boolean onFrame(long frameTimeNanos) {
+            frames++;
+            if (frames == 1) {
+                scheduler.start(this);
+                return false;
+            }
+            return frames < FRAMES;
+        }
+    }
+}
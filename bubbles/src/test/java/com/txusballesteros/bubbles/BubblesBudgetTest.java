@@ -0,0 +1,254 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Budgets of the work one interaction costs, so regressions fail the build instead of showing
+ * up as jank. The main looper is paused and advanced one frame at a time.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubblesBudgetTest {
+    private static final int MOVES_PER_FRAME = 2;
+    private static final int DRAG_FRAMES = 60;
+    private static final int WARM_UP_FRAMES = 60;
+    private static final int BUBBLES = 8;
+    private static final int BUBBLE_SIZE = 100;
+    private static final int BUBBLE_TOP = 300;
+    private static final int TOUCH_Y = BUBBLE_TOP + (BUBBLE_SIZE / 2);
+    private static final int CLICK_ANIMATION_FRAMES = 8;
+    private static final int WINDOW_UPDATES_PER_FRAME_BUDGET = 1;
+    private static final int LOOPER_MESSAGES_PER_FRAME_BUDGET = 1;
+    private static final long ALLOCATED_BYTES_PER_MOVE_BUDGET = 0;
+
+    private BubblesServiceFixture fixture;
+    private BubblesService service;
+    private CountingWindowManager windowManager;
+    private CountingBubblesExecutor executor;
+    private float touchX;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        service = fixture.service;
+        windowManager = fixture.windowManager;
+        executor = new CountingBubblesExecutor();
+        service.setExecutor(executor);
+        // A single line trash along the top of the screen, the drags below stay away from it.
+        service.addTrash(android.R.layout.simple_list_item_1);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void dragUpdatesTheWindowOncePerFrame() {
+        BubbleLayout bubble = addBubble();
+        startDrag(bubble);
+
+        for (int frame = 0; frame < DRAG_FRAMES; frame++) {
+            windowManager.reset();
+            for (int i = 0; i < MOVES_PER_FRAME; i++) {
+                move(bubble);
+            }
+            nextFrame();
+            assertEquals(WINDOW_UPDATES_PER_FRAME_BUDGET, windowManager.updateViewLayoutCalls);
+        }
+        touch(bubble, MotionEvent.ACTION_UP);
+    }
+
+    @Test
+    public void dragPostsAtMostOneMessagePerFrame() {
+        BubbleLayout bubble = addBubble();
+        startDrag(bubble);
+
+        for (int frame = 0; frame < DRAG_FRAMES; frame++) {
+            int executorCalls = executor.calls;
+            int pendingMessages = Robolectric.getForegroundThreadScheduler().size();
+            for (int i = 0; i < MOVES_PER_FRAME; i++) {
+                move(bubble);
+            }
+            int postedMessages = Robolectric.getForegroundThreadScheduler().size() - pendingMessages;
+            assertTrue("Messages posted in a frame: " + postedMessages,
+                    postedMessages <= LOOPER_MESSAGES_PER_FRAME_BUDGET);
+            assertEquals("Executor calls while dragging", executorCalls, executor.calls);
+            nextFrame();
+        }
+        touch(bubble, MotionEvent.ACTION_UP);
+    }
+
+    @Test
+    public void dragMovesStayUnderTheAllocationBudget() {
+        assumeTrue("Thread allocation counters aren't supported by this JVM",
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue("Thread allocation counters are disabled",
+                threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        BubbleLayout bubble = addBubble();
+        startDrag(bubble);
+        MotionEvent[] events = new MotionEvent[(WARM_UP_FRAMES + DRAG_FRAMES) * MOVES_PER_FRAME];
+        for (int i = 0; i < events.length; i++) {
+            touchX += 10;
+            events[i] = MotionEvent.obtain(0, fixture.nextEventTime(), MotionEvent.ACTION_MOVE, touchX, TOUCH_Y, 0);
+        }
+        // The framework calls a move makes allocate under Robolectric's shadows but not on a
+        // device, so the same calls on plain framework objects are the baseline of every move.
+        FrameLayout frameworkView = new FrameLayout(service);
+        frameworkView.setClickable(true);
+        frameworkView.addView(new View(service), BUBBLE_SIZE, BUBBLE_SIZE);
+        windowManager.addView(frameworkView, new WindowManager.LayoutParams(BUBBLE_SIZE, BUBBLE_SIZE));
+        nextFrame();
+        VelocityTracker frameworkVelocityTracker = VelocityTracker.obtain();
+        Choreographer.FrameCallback frameworkFrameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) { }
+        };
+
+        // Class loading, JIT and lazily built state happen during the first frames of a drag.
+        long maxAllocatedBytes = 0;
+        for (int frame = 0; frame < WARM_UP_FRAMES + DRAG_FRAMES; frame++) {
+            for (int i = 0; i < MOVES_PER_FRAME; i++) {
+                MotionEvent event = events[(frame * MOVES_PER_FRAME) + i];
+                long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+                bubble.onTouchEvent(event);
+                long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+                allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+                frameworkView.onTouchEvent(event);
+                frameworkVelocityTracker.addMovement(event);
+                if (i == 0) {
+                    // Only the first move of a frame schedules the layout batcher.
+                    Choreographer.getInstance().postFrameCallback(frameworkFrameCallback);
+                }
+                allocatedBytes -= threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                if (frame >= WARM_UP_FRAMES) {
+                    maxAllocatedBytes = Math.max(maxAllocatedBytes, allocatedBytes);
+                }
+            }
+            nextFrame();
+        }
+
+        assertTrue("Bytes allocated by a move: " + maxAllocatedBytes,
+                maxAllocatedBytes <= ALLOCATED_BYTES_PER_MOVE_BUDGET);
+        frameworkVelocityTracker.recycle();
+        windowManager.removeViewImmediate(frameworkView);
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+        touch(bubble, MotionEvent.ACTION_UP);
+    }
+
+    @Test
+    public void addAndClearCostOneWindowOperationPerBubble() {
+        service.beginBatch();
+        for (int i = 0; i < BUBBLES; i++) {
+            service.addBubble(fixture.createBubble(BUBBLE_SIZE), 0, i * BUBBLE_SIZE);
+        }
+        service.commitBatch();
+        nextFrame();
+        assertEquals(BUBBLES, windowManager.addViewCalls);
+        assertEquals(0, windowManager.updateViewLayoutCalls);
+
+        windowManager.reset();
+        service.clearBubbles();
+        nextFrame();
+        assertEquals(BUBBLES, windowManager.removeViewCalls);
+        assertEquals(0, windowManager.addViewCalls);
+        assertEquals(0, windowManager.updateViewLayoutCalls);
+    }
+
+    @Test
+    public void interactionsDontInflateAnimators() {
+        long inflations = BubblesAnimatorCache.getInstance().getInflations();
+
+        for (int i = 0; i < BUBBLES; i++) {
+            BubbleLayout bubble = addBubble();
+            startDrag(bubble);
+            move(bubble);
+            nextFrame();
+            touch(bubble, MotionEvent.ACTION_UP);
+            nextFrame();
+        }
+        service.clearBubbles();
+        nextFrame();
+
+        assertEquals(inflations, BubblesAnimatorCache.getInstance().getInflations());
+    }
+
+    private BubbleLayout addBubble() {
+        return fixture.addBubble(BUBBLE_SIZE, 0, BUBBLE_TOP);
+    }
+
+    /**
+     * Starts dragging the bubble sideways, away from the trash, until the click animation is
+     * over.
+     */
+    private void startDrag(BubbleLayout bubble) {
+        touchX = BUBBLE_SIZE / 2;
+        touch(bubble, MotionEvent.ACTION_DOWN);
+        for (int i = 0; i < CLICK_ANIMATION_FRAMES; i++) {
+            move(bubble);
+            nextFrame();
+        }
+    }
+
+    private void move(BubbleLayout bubble) {
+        touchX += 10;
+        touch(bubble, MotionEvent.ACTION_MOVE);
+    }
+
+    private void touch(BubbleLayout bubble, int action) {
+        fixture.touch(bubble, action, touchX, TOUCH_Y);
+    }
+
+    private void nextFrame() {
+        fixture.nextFrame();
+    }
+}
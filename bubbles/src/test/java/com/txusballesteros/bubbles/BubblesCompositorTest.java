@@ -0,0 +1,164 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.graphics.Point;
+import android.view.MotionEvent;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, qualifiers = "w360dp-h640dp-xxhdpi")
+public class BubblesCompositorTest {
+    private static final long COLLAPSE_DELAY_IN_MS = 300;
+    private static final int MAX_SETTLE_FRAMES = 120;
+    private static final int BUBBLE_SIZE = 100;
+    private static final int BUBBLE_TOP = 300;
+
+    private BubblesServiceFixture fixture;
+    private BubblesService service;
+    private CountingWindowManager windowManager;
+    private final Point screenSize = new Point();
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        service = fixture.service;
+        windowManager = fixture.windowManager;
+        windowManager.getDefaultDisplay().getSize(screenSize);
+        service.setCompositorMode(true);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void nearbyBubblesShareAWindow() {
+        BubbleLayout first = createBubble();
+        BubbleLayout second = createBubble();
+        service.beginBatch();
+        service.addBubble(first, 0, BUBBLE_TOP);
+        service.addBubble(second, 0, BUBBLE_TOP + BUBBLE_SIZE);
+        service.commitBatch();
+        waitForCollapse();
+
+        assertSame(first.getCompositor(), second.getCompositor());
+        assertWindowBounds(first.getCompositor(), 0, BUBBLE_TOP, BUBBLE_SIZE, 2 * BUBBLE_SIZE);
+    }
+
+    @Test
+    public void bubblesOnOppositeWallsGetWindowsOfTheirOwn() {
+        BubbleLayout left = createBubble();
+        BubbleLayout right = createBubble();
+        int rightX = screenSize.x - BUBBLE_SIZE;
+        service.beginBatch();
+        service.addBubble(left, 0, BUBBLE_TOP);
+        service.addBubble(right, rightX, BUBBLE_TOP);
+        service.commitBatch();
+        waitForCollapse();
+
+        assertNotSame(left.getCompositor(), right.getCompositor());
+        assertWindowBounds(left.getCompositor(), 0, BUBBLE_TOP, BUBBLE_SIZE, BUBBLE_SIZE);
+        assertWindowBounds(right.getCompositor(), rightX, BUBBLE_TOP, BUBBLE_SIZE, BUBBLE_SIZE);
+    }
+
+    @Test
+    public void dragCoversTheScreen() {
+        BubbleLayout bubble = createBubble();
+        service.addBubble(bubble, 0, BUBBLE_TOP);
+        waitForCollapse();
+
+        touch(bubble, MotionEvent.ACTION_DOWN, BUBBLE_SIZE / 2);
+        touch(bubble, MotionEvent.ACTION_MOVE, 3 * BUBBLE_SIZE);
+        nextFrame();
+
+        WindowManager.LayoutParams params = bubble.getCompositor().getViewParams();
+        assertEquals(WindowManager.LayoutParams.MATCH_PARENT, params.width);
+        assertEquals(WindowManager.LayoutParams.MATCH_PARENT, params.height);
+        touch(bubble, MotionEvent.ACTION_UP, 3 * BUBBLE_SIZE);
+    }
+
+    @Test
+    public void settleCoversABandAndCollapsesOnceAtRest() {
+        BubbleLayout bubble = createBubble();
+        service.addBubble(bubble, screenSize.x / 4, BUBBLE_TOP);
+        waitForCollapse();
+        BubblesCompositorLayout compositor = bubble.getCompositor();
+        windowManager.reset();
+
+        bubble.goToWall();
+        int frames = 0;
+        while (bubble.getViewParams().x != 0 && frames++ < MAX_SETTLE_FRAMES) {
+            nextFrame();
+            WindowManager.LayoutParams params = compositor.getViewParams();
+            assertTrue("Window height while settling: " + params.height,
+                    params.height > 0 && params.height < screenSize.y);
+        }
+        nextFrame();
+
+        assertTrue("Settle frames: " + frames, frames < MAX_SETTLE_FRAMES);
+        assertWindowBounds(compositor, 0, BUBBLE_TOP, BUBBLE_SIZE, BUBBLE_SIZE);
+        assertEquals(2, windowManager.updateViewLayoutCalls);
+    }
+
+    private BubbleLayout createBubble() {
+        return fixture.createBubble(BUBBLE_SIZE);
+    }
+
+    private void touch(BubbleLayout bubble, int action, int x) {
+        fixture.touch(bubble, action, x, BUBBLE_SIZE / 2);
+    }
+
+    private void waitForCollapse() {
+        fixture.idle(COLLAPSE_DELAY_IN_MS);
+        fixture.nextFrame();
+    }
+
+    private void nextFrame() {
+        fixture.nextFrame();
+    }
+
+    private static void assertWindowBounds(BubblesCompositorLayout compositor,
+                                           int x, int y, int width, int height) {
+        WindowManager.LayoutParams params = compositor.getViewParams();
+        assertEquals(x, params.x);
+        assertEquals(y, params.y);
+        assertEquals(width, params.width);
+        assertEquals(height, params.height);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.content.Context;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BubblesDiffTest {
+    private final BubblesAdapter adapter = new ItemsAdapter();
+
+    @Test
+    public void newItemsAreInserted() {
+        BubblesDiff diff = calculate(items(), items("a1", "b1"));
+
+        assertArrayEquals(new int[] { BubblesDiff.INSERTED, BubblesDiff.INSERTED }, diff.flags);
+        assertArrayEquals(new long[] { 'a', 'b' }, diff.ids);
+        assertEquals(0, diff.removedIds.length);
+    }
+
+    @Test
+    public void missingItemsAreRemoved() {
+        BubblesDiff diff = calculate(items("a1", "b1", "c1"), items("b1"));
+
+        assertArrayEquals(new int[] { 0 }, diff.flags);
+        long[] removedIds = diff.removedIds.clone();
+        Arrays.sort(removedIds);
+        assertArrayEquals(new long[] { 'a', 'c' }, removedIds);
+    }
+
+    @Test
+    public void itemsWithOtherContentsAreChanged() {
+        BubblesDiff diff = calculate(items("a1", "b1"), items("a1", "b2"));
+
+        assertArrayEquals(new int[] { 0, BubblesDiff.CHANGED }, diff.flags);
+    }
+
+    @Test
+    public void onlyTheItemsOutOfOrderAreMoved() {
+        BubblesDiff diff = calculate(items("a1", "b1", "c1", "d1"), items("b1", "c1", "d1", "a2"));
+
+        assertArrayEquals(new int[] { 0, 0, 0, BubblesDiff.CHANGED | BubblesDiff.MOVED },
+                diff.flags);
+    }
+
+    @Test
+    public void swappedItemsMoveOnlyOne() {
+        BubblesDiff diff = calculate(items("a1", "b1"), items("b1", "a1"));
+
+        int moves = 0;
+        for (int flags : diff.flags) {
+            if ((flags & BubblesDiff.MOVED) != 0) {
+                moves++;
+            }
+        }
+        assertEquals(1, moves);
+    }
+
+    @Test
+    public void repeatedIdsAreDuplicated() {
+        BubblesDiff diff = calculate(items("a1"), items("a1", "b1", "a2"));
+
+        assertArrayEquals(new int[] { 0, BubblesDiff.INSERTED, BubblesDiff.DUPLICATED },
+                diff.flags);
+        assertEquals(0, diff.removedIds.length);
+    }
+
+    private BubblesDiff calculate(List<Object> oldItems, List<Object> newItems) {
+        return BubblesDiff.calculate(adapter, oldItems, newItems);
+    }
+
+    private static List<Object> items(Object... items) {
+        return items.length == 0 ? Collections.emptyList() : Arrays.asList(items);
+    }
+
+    /**
+     * Items are strings, the first char is the id and the rest the contents.
+     */
+    static class ItemsAdapter extends BubblesAdapter {
+        @Override
+        public long getItemId(Object item) {
+            return ((String) item).charAt(0);
+        }
+
+        @Override
+        public BubbleLayout onCreateBubble(Context context) {
+            return new BubbleLayout(context);
+        }
+
+        @Override
+        public void onBindBubble(BubbleLayout bubble, Object item) {
+            bubble.setTag(item);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BubblesRedundancyTest {
+    private static final int BUBBLE_SIZE = 100;
+
+    private BubblesServiceFixture fixture;
+    private BubblesService service;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        service = fixture.service;
+        service.setAllowRedundancies(false);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void reboundBubbleIsLookedUpByItsNewTag() {
+        BubbleLayout bubble = addBubble("b1");
+
+        // As a BubbleBinder rebinding it to another item.
+        bubble.setTag("b2");
+
+        assertNull(service.findBubbleByTag("b1"));
+        assertSame(bubble, service.findBubbleByTag("b2"));
+    }
+
+    @Test
+    public void redundancyIsCheckedAgainstTheCurrentTags() {
+        BubbleLayout bubble = addBubble("b1");
+        bubble.setTag("b2");
+
+        BubbleLayout firstItem = addBubble("b1");
+        addBubble("b2");
+
+        assertSame(firstItem, service.findBubbleByTag("b1"));
+        assertSame(bubble, service.findBubbleByTag("b2"));
+    }
+
+    @Test
+    public void removedBubbleKeepsOutOfTheIndex() {
+        BubbleLayout bubble = addBubble("b1");
+        service.removeBubble(bubble);
+
+        bubble.setTag("b2");
+
+        assertNull(service.findBubbleByTag("b2"));
+    }
+
+    @Test
+    public void tryAddBubbleTellsWhetherTheBubbleWasAdded() {
+        BubbleLayout first = fixture.createBubble(BUBBLE_SIZE);
+        first.setTag("b1");
+        BubbleLayout second = fixture.createBubble(BUBBLE_SIZE);
+        second.setTag("b1");
+
+        assertTrue(service.tryAddBubble(first, 0, 0));
+        assertFalse(service.tryAddBubble(second, 0, 0));
+        assertSame(first, service.findBubbleByTag("b1"));
+    }
+
+    private BubbleLayout addBubble(Object tag) {
+        BubbleLayout bubble = fixture.createBubble(BUBBLE_SIZE);
+        bubble.setTag(tag);
+        service.addBubble(bubble, 0, 0);
+        return bubble;
+    }
+}
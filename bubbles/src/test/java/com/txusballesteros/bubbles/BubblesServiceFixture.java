@@ -0,0 +1,107 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service under test with a counting window manager and a paused main looper, advanced one
+ * frame at a time. Bubbles are laid out at a fixed size, Robolectric doesn't lay windows out.
+ */
+class BubblesServiceFixture {
+    static final long FRAME_INTERVAL_IN_MS = 16;
+    static final long TOUCH_INTERVAL_IN_MS = 8;
+
+    final BubblesService service;
+    final CountingWindowManager windowManager;
+    private long eventTime;
+
+    BubblesServiceFixture() {
+        service = Robolectric.setupService(BubblesService.class);
+        windowManager = new CountingWindowManager(
+                (WindowManager) service.getSystemService(Context.WINDOW_SERVICE));
+        service.setWindowManager(windowManager);
+        ShadowLooper.pauseMainLooper();
+    }
+
+    void destroy() {
+        ShadowLooper.unPauseMainLooper();
+        service.onDestroy();
+    }
+
+    BubbleLayout createBubble(int size) {
+        BubbleLayout bubble = new BubbleLayout(service);
+        bubble.addView(new View(service), size, size);
+        layout(bubble, size);
+        return bubble;
+    }
+
+    /**
+     * Adds a bubble and runs the frame that attaches it.
+     */
+    BubbleLayout addBubble(int size, int x, int y) {
+        BubbleLayout bubble = createBubble(size);
+        service.addBubble(bubble, x, y);
+        nextFrame();
+        layout(bubble, size);
+        return bubble;
+    }
+
+    private static void layout(BubbleLayout bubble, int size) {
+        int sizeSpec = View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+        bubble.measure(sizeSpec, sizeSpec);
+        bubble.layout(0, 0, size, size);
+    }
+
+    /**
+     * Dispatches a touch event at the given raw position, TOUCH_INTERVAL_IN_MS after the last one.
+     */
+    void touch(BubbleLayout bubble, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(0, nextEventTime(), action, x, y, 0);
+        bubble.onTouchEvent(event);
+        event.recycle();
+    }
+
+    long nextEventTime() {
+        eventTime += TOUCH_INTERVAL_IN_MS;
+        return eventTime;
+    }
+
+    void nextFrame() {
+        idle(FRAME_INTERVAL_IN_MS);
+    }
+
+    void idle(long timeInMs) {
+        ShadowLooper.idleMainLooper(timeInMs, TimeUnit.MILLISECONDS);
+    }
+}
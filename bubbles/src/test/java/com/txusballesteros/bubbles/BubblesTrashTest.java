@@ -0,0 +1,106 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.content.res.Configuration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowDisplay;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, qualifiers = "w360dp-h640dp-xxhdpi")
+public class BubblesTrashTest {
+    private static final int PORTRAIT_WIDTH = 1080;
+    private static final int LANDSCAPE_WIDTH = 1920;
+
+    private BubblesServiceFixture fixture;
+    private BubblesService service;
+    private CountingWindowManager windowManager;
+    private ShadowDisplay display;
+
+    @Before
+    public void setUp() {
+        fixture = new BubblesServiceFixture();
+        service = fixture.service;
+        windowManager = fixture.windowManager;
+        display = shadowOf(windowManager.getDefaultDisplay());
+        // A single line trash along the top of the screen, as wide as the screen.
+        service.addTrash(android.R.layout.simple_list_item_1);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.destroy();
+    }
+
+    @Test
+    public void attachedTrashFollowsTheRotation() {
+        service.prewarmTrash();
+        assertEquals(PORTRAIT_WIDTH, windowManager.lastParams.width);
+
+        windowManager.reset();
+        rotate();
+        service.onConfigurationChanged(new Configuration());
+
+        assertEquals(1, windowManager.updateViewLayoutCalls);
+        assertEquals(LANDSCAPE_WIDTH, windowManager.lastParams.width);
+    }
+
+    @Test
+    public void detachedTrashIsLaidOutOnTheNextPrewarm() {
+        rotate();
+        service.onConfigurationChanged(new Configuration());
+        assertEquals(0, windowManager.addViewCalls + windowManager.updateViewLayoutCalls);
+
+        service.prewarmTrash();
+
+        assertEquals(1, windowManager.addViewCalls);
+        assertEquals(LANDSCAPE_WIDTH, windowManager.lastParams.width);
+    }
+
+    @Test
+    public void prewarmKeepsTheTrashLayoutForTheSameScreen() {
+        service.prewarmTrash();
+
+        windowManager.reset();
+        service.prewarmTrash();
+        service.onConfigurationChanged(new Configuration());
+
+        assertEquals(0, windowManager.updateViewLayoutCalls);
+    }
+
+    private void rotate() {
+        display.setWidth(LANDSCAPE_WIDTH);
+        display.setHeight(PORTRAIT_WIDTH);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright Txus Ballesteros 2015 (@txusballesteros)
+ *
+ * This file is part of some open source application.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ * Contact: Txus Ballesteros <txus.ballesteros@gmail.com>
+ */
+package com.txusballesteros.bubbles;
+
+import android.view.Display;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+
+/**
+ * Window manager counting the window operations it forwards to the real one, and keeping the
+ * params of the last window added or updated.
+ */
+class CountingWindowManager implements WindowManager {
+    private final WindowManager windowManager;
+    int addViewCalls;
+    int removeViewCalls;
+    int updateViewLayoutCalls;
+    View lastView;
+    WindowManager.LayoutParams lastParams;
+
+    CountingWindowManager(WindowManager windowManager) {
+        this.windowManager = windowManager;
+    }
+
+    void reset() {
+        addViewCalls = 0;
+        removeViewCalls = 0;
+        updateViewLayoutCalls = 0;
+    }
+
+    @Override
+    public Display getDefaultDisplay() {
+        return windowManager.getDefaultDisplay();
+    }
+
+    @Override
+    public void removeViewImmediate(View view) {
+        removeViewCalls++;
+        windowManager.removeViewImmediate(view);
+    }
+
+    @Override
+    public void addView(View view, ViewGroup.LayoutParams params) {
+        addViewCalls++;
+        lastView = view;
+        lastParams = (WindowManager.LayoutParams) params;
+        windowManager.addView(view, params);
+    }
+
+    @Override
+    public void updateViewLayout(View view, ViewGroup.LayoutParams params) {
+        updateViewLayoutCalls++;
+        lastView = view;
+        lastParams = (WindowManager.LayoutParams) params;
+        windowManager.updateViewLayout(view, params);
+    }
+
+    @Override
+    public void removeView(View view) {
+        removeViewCalls++;
+        windowManager.removeView(view);
+    }
+}